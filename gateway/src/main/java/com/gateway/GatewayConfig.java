@@ -1,5 +1,6 @@
 package com.gateway;
 
+import com.gateway.filter.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
@@ -19,13 +20,15 @@ public class GatewayConfig {
     private String vendorServiceUrl;   // e.g. http://localhost:8082
 
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
+    public RouteLocator customRouteLocator(RouteLocatorBuilder builder, RateLimitFilter rateLimitFilter) {
         return builder.routes()
 
             // ============= IAM SERVICE ROUTE =============
             .route("iam-service", r -> r
                 .path("/iam/**")
                 .filters(f -> f
+                    // Refuse over-limit requests before a backend connection is opened
+                    .filter(rateLimitFilter)
                     // Remove /iam from the path sent to IAM service
                     // Gateway: /iam/api/auth/login -> Backend: /api/auth/login
                     .rewritePath("/iam/(?<segment>.*)", "/iam/${segment}")
@@ -54,6 +57,7 @@ public class GatewayConfig {
             .route("vendor-service", r -> r
                 .path("/vendor/**")
                 .filters(f -> f
+                    .filter(rateLimitFilter)
                     // Gateway: /vendor/api/v1/vendors -> Backend: /api/v1/vendors
                     .rewritePath("/vendor/(?<segment>.*)", "/vendor/${segment}")
                     .retry(retryConfig -> retryConfig
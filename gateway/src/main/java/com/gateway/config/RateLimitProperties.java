@@ -0,0 +1,54 @@
+package com.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Edge rate limits. A request is counted against the first tier whose paths (and methods, if
+ * given) match it, keyed by the authenticated user or else the client IP, and always against the
+ * global per-IP limit.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Distinct keys tracked per tier before the least recently used are dropped
+    private long maxKeys = 100000;
+
+    private Limit global = new Limit(1000, Duration.ofMinutes(1));
+
+    private List<Tier> tiers = new ArrayList<>();
+
+    @Data
+    public static class Limit {
+        private int requests;
+        private Duration duration = Duration.ofMinutes(1);
+
+        public Limit() {
+        }
+
+        public Limit(int requests, Duration duration) {
+            this.requests = requests;
+            this.duration = duration;
+        }
+    }
+
+    @Data
+    public static class Tier {
+        private String name;
+        // Path patterns as in gateway.auth.public-paths, e.g. /iam/api/v1/admin/**
+        private List<String> paths = new ArrayList<>();
+        // Empty to match every method
+        private List<String> methods = new ArrayList<>();
+        private int requests;
+        private Duration duration = Duration.ofMinutes(1);
+    }
+}
@@ -0,0 +1,308 @@
+package com.gateway.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.security.IdentityHeaderSigner;
+import com.gateway.security.JwksKeyResolver;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies bearer tokens once at the edge. Invalid tokens are rejected before any backend
+ * connection is used; valid ones are forwarded with signed identity headers so backends
+ * can skip re-verification. Verified tokens are cached by digest until they expire.
+ */
+@Slf4j
+@Component
+public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
+
+    // Exchange attribute holding the user id of a token verified here; unlike X-User-Id, never client-supplied
+    public static final String VERIFIED_USER_ID_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".userId";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final boolean enabled;
+    private final List<PathPattern> publicPaths;
+    private final SecretKey hmacKey;
+    private final JwksKeyResolver keyResolver;
+    private final IdentityHeaderSigner identitySigner;
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ThreadLocal<MessageDigest> digestHolder = ThreadLocal.withInitial(JwtAuthenticationFilter::createDigest);
+
+    public JwtAuthenticationFilter(@Value("${gateway.auth.enabled:true}") boolean enabled,
+                                   @Value("${gateway.auth.public-paths:}") String[] publicPaths,
+                                   @Value("${gateway.auth.jwt-secret:}") String jwtSecret,
+                                   @Value("${gateway.auth.cache-max-size:50000}") long cacheMaxSize,
+                                   JwksKeyResolver keyResolver,
+                                   IdentityHeaderSigner identitySigner) {
+        this.enabled = enabled;
+        this.publicPaths = Arrays.stream(publicPaths)
+                .filter(StringUtils::hasText)
+                .map(path -> PathPatternParser.defaultInstance.parse(path.trim()))
+                .toList();
+        this.hmacKey = StringUtils.hasText(jwtSecret)
+                ? Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8))
+                : null;
+        if (enabled && hmacKey == null && !keyResolver.isEnabled()) {
+            throw new IllegalStateException(
+                    "gateway.auth.jwt-secret or gateway.auth.jwk-set-uri is required when auth is enabled");
+        }
+        this.keyResolver = keyResolver;
+        this.identitySigner = identitySigner;
+        this.parser = Jwts.parser().keyLocator(new VerificationKeyLocator()).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        String token = extractToken(request);
+
+        if (token == null || isPublicPath(request)) {
+            return chain.filter(withIdentity(exchange, null));
+        }
+
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return chain.filter(withIdentity(exchange, cached));
+        }
+
+        return verify(token)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(verified -> {
+                    if (verified.isEmpty()) {
+                        return rejectUnauthorized(exchange);
+                    }
+                    verifiedTokens.put(digest, verified.get());
+                    return chain.filter(withIdentity(exchange, verified.get()));
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return -2; // Ahead of the circuit breaker so rejected requests never reach a backend
+    }
+
+    private Mono<VerifiedToken> verify(String token) {
+        String kid = readKeyId(token);
+        Mono<Key> keyLookup = kid != null && keyResolver.isEnabled()
+                ? keyResolver.resolve(kid)
+                : Mono.empty();
+
+        // Make sure the kid is resolvable before the synchronous parse
+        return keyLookup.then(Mono.fromCallable(() -> {
+                    Claims claims = parser.parseSignedClaims(token).getPayload();
+                    return VerifiedToken.from(claims);
+                }))
+                .onErrorResume(e -> {
+                    log.debug("Rejected bearer token: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private ServerWebExchange withIdentity(ServerWebExchange exchange, VerifiedToken verified) {
+        ServerHttpRequest mutated = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    // Never pass through identity headers supplied by the client
+                    IdentityHeaderSigner.IDENTITY_HEADERS.forEach(headers::remove);
+                    if (verified != null) {
+                        verified.writeTo(headers);
+                        identitySigner.sign(headers);
+                    }
+                })
+                .build();
+        ServerWebExchange withIdentity = exchange.mutate().request(mutated).build();
+        if (verified != null) {
+            withIdentity.getAttributes().put(VERIFIED_USER_ID_ATTRIBUTE, verified.userId());
+        }
+        return withIdentity;
+    }
+
+    private Mono<Void> rejectUnauthorized(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        response.getHeaders().add("Content-Type", "application/json");
+        response.getHeaders().add(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+
+        String body = String.format("""
+            {
+                "error": "INVALID_TOKEN",
+                "message": "Bearer token is invalid or expired",
+                "timestamp": "%s"
+            }
+            """, Instant.now());
+
+        DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    private String extractToken(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            String token = authorization.substring(BEARER_PREFIX.length()).trim();
+            return token.isEmpty() ? null : token;
+        }
+        return null;
+    }
+
+    private boolean isPublicPath(ServerHttpRequest request) {
+        for (PathPattern pattern : publicPaths) {
+            if (pattern.matches(request.getPath().pathWithinApplication())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readKeyId(String token) {
+        int end = token.indexOf('.');
+        if (end <= 0) {
+            return null;
+        }
+        try {
+            byte[] header = Base64.getUrlDecoder().decode(token.substring(0, end));
+            JsonNode kid = objectMapper.readTree(header).get("kid");
+            return kid != null ? kid.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String digest(String token) {
+        byte[] hash = digestHolder.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Kid-bearing tokens verify against IAM's JWK set, kid-less ones against the shared secret
+    private class VerificationKeyLocator extends LocatorAdapter<Key> {
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            String kid = header.getKeyId();
+            if (kid == null) {
+                return hmacKey;
+            }
+            return keyResolver.getCachedKey(kid);
+        }
+    }
+
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long remainingMillis = value.expiresAt() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private record VerifiedToken(String userId, String email, String tenantId, String roles,
+                                 String jti, long issuedAt, long expiresAt, String permissionsVersion,
+                                 String sessionId, String permissions) {
+
+        static VerifiedToken from(Claims claims) {
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                throw new IllegalArgumentException("Token is missing subject or expiration");
+            }
+            List<?> roles = claims.get("roles", List.class);
+            Object permissionsVersion = claims.get("pv");
+            // Millisecond issue time, which IAM compares against revocation watermarks
+            Object issuedAtMillis = claims.get("iatms");
+            return new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.get("tenantId", String.class),
+                    roles != null ? String.join(",", roles.stream().map(String::valueOf).toList()) : "",
+                    claims.getId(),
+                    issuedAtMillis instanceof Number millis ? millis.longValue()
+                            : claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L,
+                    claims.getExpiration().getTime(),
+                    permissionsVersion != null ? permissionsVersion.toString() : null,
+                    claims.get("sid", String.class),
+                    claims.get("perms", String.class));
+        }
+
+        void writeTo(HttpHeaders headers) {
+            headers.set(IdentityHeaderSigner.USER_ID, userId);
+            setIfPresent(headers, IdentityHeaderSigner.USER_EMAIL, email);
+            setIfPresent(headers, IdentityHeaderSigner.TENANT_ID, tenantId);
+            headers.set(IdentityHeaderSigner.ROLES, roles);
+            setIfPresent(headers, IdentityHeaderSigner.TOKEN_ID, jti);
+            headers.set(IdentityHeaderSigner.TOKEN_ISSUED_AT, String.valueOf(issuedAt));
+            headers.set(IdentityHeaderSigner.TOKEN_EXPIRES_AT, String.valueOf(expiresAt));
+            setIfPresent(headers, IdentityHeaderSigner.PERMISSIONS_VERSION, permissionsVersion);
+            setIfPresent(headers, IdentityHeaderSigner.SESSION_ID, sessionId);
+            setIfPresent(headers, IdentityHeaderSigner.PERMISSIONS, permissions);
+        }
+
+        private static void setIfPresent(HttpHeaders headers, String name, String value) {
+            if (value != null) {
+                headers.set(name, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.gateway.filter;
+
+import com.gateway.config.RateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limits requests at the edge, per route tier and per client, before any backend connection
+ * is opened. Runs after JWT verification, so an authenticated user is limited across all of their
+ * IPs while anonymous traffic is limited per IP; every request also counts against the global
+ * per-IP limit, so rotating tokens does not lift it. Rejected requests get 429 with
+ * X-RateLimit-* headers. Limits are per gateway instance.
+ */
+@Slf4j
+@Component
+public class RateLimitFilter implements GatewayFilter, Ordered {
+
+    private final boolean enabled;
+    private final TokenBuckets global;
+    private final List<TierLimiter> tiers;
+
+    @Autowired
+    public RateLimitFilter(RateLimitProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    RateLimitFilter(RateLimitProperties properties, Clock clock) {
+        this.enabled = properties.isEnabled();
+        this.global = new TokenBuckets(properties.getGlobal().getRequests(), properties.getGlobal().getDuration(),
+                properties.getMaxKeys(), clock);
+        this.tiers = properties.getTiers().stream()
+                .map(tier -> new TierLimiter(tier, new TokenBuckets(tier.getRequests(), tier.getDuration(),
+                        properties.getMaxKeys(), clock)))
+                .toList();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        String clientIp = clientIp(request);
+
+        long globalRemaining = global.tryAcquire(clientIp);
+        if (globalRemaining < 0) {
+            log.warn("Global rate limit exceeded for IP: {}", clientIp);
+            return reject(exchange, global, clientIp, "Too many requests. Please try again later.");
+        }
+
+        TierLimiter tier = tierFor(request);
+        if (tier == null) {
+            return chain.filter(exchange);
+        }
+
+        // Only an identity verified by JwtAuthenticationFilter; X-User-Id could be sent by the client
+        String userId = exchange.getAttribute(JwtAuthenticationFilter.VERIFIED_USER_ID_ATTRIBUTE);
+        String key = userId != null ? "user:" + userId : "ip:" + clientIp;
+        long remaining = tier.buckets().tryAcquire(key);
+        if (remaining < 0) {
+            log.warn("Rate limit '{}' exceeded for {}, path: {}", tier.name(), key, request.getPath().value());
+            return reject(exchange, tier.buckets(), key, "Rate limit exceeded. Please try again later.");
+        }
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.set("X-RateLimit-Limit", String.valueOf(tier.buckets().getCapacity()));
+        headers.set("X-RateLimit-Remaining", String.valueOf(remaining));
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return -1; // After JWT verification (-2), so verified user ids can be used as keys
+    }
+
+    private TierLimiter tierFor(ServerHttpRequest request) {
+        for (TierLimiter tier : tiers) {
+            if (tier.matches(request)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    // The gateway is the edge, so the peer address is the client; X-Forwarded-For is client-controlled
+    private String clientIp(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return "unknown";
+        }
+        return remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress()
+                : remoteAddress.getHostString();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, TokenBuckets buckets, String key, String message) {
+        // Rounded up, so a client told to wait does not retry while still refused
+        long retryAfter = Math.max(1, (buckets.timeUntilToken(key).toMillis() + 999) / 1000);
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().add("Content-Type", "application/json");
+        response.getHeaders().set("X-RateLimit-Limit", String.valueOf(buckets.getCapacity()));
+        response.getHeaders().set("X-RateLimit-Remaining", "0");
+        response.getHeaders().set("X-RateLimit-Reset", String.valueOf(retryAfter));
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+
+        String body = String.format("""
+            {
+                "error": "RATE_LIMIT_EXCEEDED",
+                "message": "%s",
+                "limit": %d,
+                "remaining": 0,
+                "retryAfter": %d,
+                "timestamp": "%s"
+            }
+            """, message, buckets.getCapacity(), retryAfter, Instant.now());
+
+        DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    private record TierLimiter(String name, List<PathPattern> paths, Set<String> methods, TokenBuckets buckets) {
+
+        TierLimiter(RateLimitProperties.Tier tier, TokenBuckets buckets) {
+            this(tier.getName(),
+                    tier.getPaths().stream()
+                            .filter(StringUtils::hasText)
+                            .map(path -> PathPatternParser.defaultInstance.parse(path.trim()))
+                            .toList(),
+                    tier.getMethods().stream()
+                            .map(method -> method.trim().toUpperCase())
+                            .collect(Collectors.toUnmodifiableSet()),
+                    buckets);
+        }
+
+        boolean matches(ServerHttpRequest request) {
+            if (!methods.isEmpty() && !methods.contains(request.getMethod().name())) {
+                return false;
+            }
+            for (PathPattern pattern : paths) {
+                if (pattern.matches(request.getPath().pathWithinApplication())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
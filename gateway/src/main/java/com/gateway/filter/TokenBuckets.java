@@ -0,0 +1,110 @@
+package com.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per key sharing one capacity and refill period. A bucket is a single long packing
+ * its last refill time and token count, updated with CAS, so a check never blocks the event loop.
+ * Buckets idle for a whole period have refilled completely, so expiring them loses nothing.
+ */
+final class TokenBuckets {
+
+    private static final int TOKEN_BITS = 26;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // Tokens are counted in thousandths so slow refill rates accrue between checks
+    private static final long SCALE = 1000;
+
+    static final long MAX_CAPACITY = TOKEN_MASK / SCALE;
+
+    private final long capacity;
+    private final long capacityUnits;
+    private final long periodMillis;
+    private final Clock clock;
+    // Times are stored relative to this, so they fit the bits left over by the tokens
+    private final long epochMillis;
+    private final Cache<String, AtomicLong> buckets;
+
+    TokenBuckets(long capacity, Duration period, long maxKeys, Clock clock) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || period.toMillis() <= 0) {
+            throw new IllegalArgumentException("Invalid rate limit: " + capacity + "/" + period);
+        }
+        this.capacity = capacity;
+        this.capacityUnits = capacity * SCALE;
+        this.periodMillis = period.toMillis();
+        this.clock = clock;
+        this.epochMillis = clock.millis();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(period)
+                .build();
+    }
+
+    /**
+     * Takes one token from the key's bucket.
+     *
+     * @return whole tokens left after taking one, or -1 if the bucket was empty
+     */
+    long tryAcquire(String key) {
+        long now = now();
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(pack(now, capacityUnits)));
+        while (true) {
+            long state = bucket.get();
+            long refilled = refill(state, now);
+            if ((refilled & TOKEN_MASK) < SCALE) {
+                return -1;
+            }
+            long taken = refilled - SCALE;
+            if (bucket.compareAndSet(state, taken)) {
+                return (taken & TOKEN_MASK) / SCALE;
+            }
+        }
+    }
+
+    /**
+     * Time until the key's bucket holds a whole token again.
+     */
+    Duration timeUntilToken(String key) {
+        AtomicLong bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return Duration.ZERO;
+        }
+        long missingUnits = SCALE - (refill(bucket.get(), now()) & TOKEN_MASK);
+        return missingUnits <= 0 ? Duration.ZERO
+                : Duration.ofMillis((missingUnits * periodMillis + capacityUnits - 1) / capacityUnits);
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    // Advances the stored time only by what the accrued units took, keeping any remainder
+    private long refill(long state, long now) {
+        long last = state >>> TOKEN_BITS;
+        long tokens = state & TOKEN_MASK;
+        long elapsed = now - last;
+        if (tokens >= capacityUnits || elapsed >= periodMillis) {
+            return pack(now, capacityUnits);
+        }
+        long accrued = elapsed > 0 ? elapsed * capacityUnits / periodMillis : 0;
+        if (accrued == 0) {
+            return state;
+        }
+        if (tokens + accrued >= capacityUnits) {
+            return pack(now, capacityUnits);
+        }
+        return pack(last + (accrued * periodMillis + capacityUnits - 1) / capacityUnits, tokens + accrued);
+    }
+
+    private long now() {
+        return Math.max(0, clock.millis() - epochMillis);
+    }
+
+    private static long pack(long time, long tokens) {
+        return (time << TOKEN_BITS) | tokens;
+    }
+}
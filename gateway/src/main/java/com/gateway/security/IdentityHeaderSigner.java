@@ -0,0 +1,83 @@
+package com.gateway.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Signs the identity headers the gateway forwards after verifying a token, so backends can
+ * trust them without re-verifying the JWT. Backends must use the same secret and canonical form.
+ */
+@Component
+public class IdentityHeaderSigner {
+
+    public static final String USER_ID = "X-User-Id";
+    public static final String USER_EMAIL = "X-User-Email";
+    public static final String TENANT_ID = "X-Tenant-Id";
+    public static final String ROLES = "X-Roles";
+    public static final String TOKEN_ID = "X-Token-Id";
+    public static final String TOKEN_ISSUED_AT = "X-Token-Issued-At";
+    public static final String TOKEN_EXPIRES_AT = "X-Token-Expires-At";
+    public static final String PERMISSIONS_VERSION = "X-Permissions-Version";
+    public static final String SESSION_ID = "X-Session-Id";
+    public static final String PERMISSIONS = "X-Permissions";
+    public static final String IDENTITY_TIMESTAMP = "X-Identity-Timestamp";
+    public static final String IDENTITY_SIGNATURE = "X-Identity-Signature";
+
+    // Every header a client could use to impersonate a gateway-verified identity
+    public static final List<String> IDENTITY_HEADERS = List.of(
+            USER_ID, USER_EMAIL, TENANT_ID, ROLES, TOKEN_ID, TOKEN_ISSUED_AT, TOKEN_EXPIRES_AT,
+            PERMISSIONS_VERSION, SESSION_ID, PERMISSIONS, IDENTITY_TIMESTAMP, IDENTITY_SIGNATURE);
+
+    // Canonical order of the signed headers
+    private static final List<String> SIGNED_HEADERS = IDENTITY_HEADERS.subList(0, IDENTITY_HEADERS.size() - 1);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secretKey;
+
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::createMac);
+
+    public IdentityHeaderSigner(@Value("${gateway.auth.identity-secret}") String identitySecret) {
+        if (!StringUtils.hasText(identitySecret)) {
+            throw new IllegalStateException("gateway.auth.identity-secret is required");
+        }
+        this.secretKey = new SecretKeySpec(identitySecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Adds the timestamp and signature headers over the identity headers already set.
+     */
+    public void sign(HttpHeaders headers) {
+        headers.set(IDENTITY_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        headers.set(IDENTITY_SIGNATURE, signature(headers));
+    }
+
+    private String signature(HttpHeaders headers) {
+        StringBuilder canonical = new StringBuilder(256);
+        for (String name : SIGNED_HEADERS) {
+            String value = headers.getFirst(name);
+            canonical.append(value != null ? value : "").append('\n');
+        }
+        byte[] mac = macHolder.get().doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
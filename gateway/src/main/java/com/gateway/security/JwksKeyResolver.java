@@ -0,0 +1,99 @@
+package com.gateway.security;
+
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves IAM token verification keys by kid from its JWK set. Keys are kept in memory and
+ * the set is only refetched when an unknown kid shows up (key rotation), at most once per
+ * refresh interval, so steady-state traffic makes no network calls.
+ */
+@Slf4j
+@Component
+public class JwksKeyResolver {
+
+    private final String jwkSetUri;
+    private final Duration minRefreshInterval;
+    private final WebClient webClient;
+
+    private volatile Map<String, Key> keys = Map.of();
+    private volatile long lastFetchMillis;
+    private volatile Mono<Map<String, Key>> inFlight;
+
+    public JwksKeyResolver(@Value("${gateway.auth.jwk-set-uri:}") String jwkSetUri,
+                           @Value("${gateway.auth.jwks-min-refresh-interval:30s}") Duration minRefreshInterval,
+                           WebClient.Builder webClientBuilder) {
+        this.jwkSetUri = jwkSetUri;
+        this.minRefreshInterval = minRefreshInterval;
+        this.webClient = webClientBuilder.build();
+    }
+
+    public boolean isEnabled() {
+        return StringUtils.hasText(jwkSetUri);
+    }
+
+    public Key getCachedKey(String kid) {
+        return keys.get(kid);
+    }
+
+    public Mono<Key> resolve(String kid) {
+        Key key = keys.get(kid);
+        if (key != null) {
+            return Mono.just(key);
+        }
+        if (System.currentTimeMillis() - lastFetchMillis < minRefreshInterval.toMillis() && inFlight == null) {
+            return Mono.empty();
+        }
+        return refresh().mapNotNull(refreshed -> refreshed.get(kid));
+    }
+
+    private synchronized Mono<Map<String, Key>> refresh() {
+        Mono<Map<String, Key>> current = inFlight;
+        if (current != null) {
+            return current;
+        }
+        // Concurrent misses share a single fetch
+        current = webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofSeconds(5))
+                .map(this::parse)
+                .doOnNext(parsed -> keys = parsed)
+                .onErrorResume(e -> {
+                    log.warn("Failed to fetch JWK set from {}: {}", jwkSetUri, e.getMessage());
+                    return Mono.just(keys);
+                })
+                .doFinally(signal -> {
+                    lastFetchMillis = System.currentTimeMillis();
+                    inFlight = null;
+                })
+                .cache();
+        inFlight = current;
+        return current;
+    }
+
+    private Map<String, Key> parse(String json) {
+        JwkSet jwkSet = Jwks.setParser().build().parse(json);
+        Map<String, Key> parsed = new HashMap<>();
+        for (Jwk<?> jwk : jwkSet.getKeys()) {
+            if (jwk.getId() != null) {
+                parsed.put(jwk.getId(), jwk.toKey());
+            }
+        }
+        log.info("Loaded {} verification keys from {}", parsed.size(), jwkSetUri);
+        return Map.copyOf(parsed);
+    }
+}
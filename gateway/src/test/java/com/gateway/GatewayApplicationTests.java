@@ -3,7 +3,10 @@ package com.gateway;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+		"gateway.auth.jwt-secret=test-jwt-secret-that-is-long-enough-for-hs512-0123456789abcdef",
+		"gateway.auth.identity-secret=test-gateway-identity-secret"
+})
 class GatewayApplicationTests {
 
 	@Test
@@ -0,0 +1,137 @@
+package com.gateway.filter;
+
+import com.gateway.config.RateLimitProperties;
+import com.gateway.security.IdentityHeaderSigner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.incrementAndGet();
+        return Mono.empty();
+    };
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setGlobal(new RateLimitProperties.Limit(5, Duration.ofMinutes(1)));
+        properties.setTiers(List.of(
+            tier("login", "/iam/api/v1/auth/login", 2),
+            tier("general", "/iam/**", 3)));
+        filter = new RateLimitFilter(properties,
+            Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneId.of("UTC")));
+    }
+
+    @Test
+    void testRequestsOverTierLimitAreRejectedWithoutForwarding() {
+        // Given
+        filter.filter(exchange("/iam/api/v1/auth/login", "10.0.0.1", null), chain).block();
+        filter.filter(exchange("/iam/api/v1/auth/login", "10.0.0.1", null), chain).block();
+
+        // When
+        MockServerWebExchange rejected = exchange("/iam/api/v1/auth/login", "10.0.0.1", null);
+        filter.filter(rejected, chain).block();
+
+        // Then
+        assertEquals(2, forwarded.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst("X-RateLimit-Limit"));
+        assertEquals("0", rejected.getResponse().getHeaders().getFirst("X-RateLimit-Remaining"));
+        assertEquals("30", rejected.getResponse().getHeaders().getFirst("X-RateLimit-Reset"));
+    }
+
+    @Test
+    void testAuthenticatedUsersAreLimitedPerUser() {
+        // Given - one user exhausts the general tier
+        for (int i = 0; i < 3; i++) {
+            filter.filter(exchange("/iam/api/v1/users/me", "10.0.0.1", "user-1"), chain).block();
+        }
+
+        // When
+        MockServerWebExchange sameUser = exchange("/iam/api/v1/users/me", "10.0.0.1", "user-1");
+        MockServerWebExchange otherUser = exchange("/iam/api/v1/users/me", "10.0.0.1", "user-2");
+        filter.filter(sameUser, chain).block();
+        filter.filter(otherUser, chain).block();
+
+        // Then
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, sameUser.getResponse().getStatusCode());
+        assertNull(otherUser.getResponse().getStatusCode());
+        assertEquals("2", otherUser.getResponse().getHeaders().getFirst("X-RateLimit-Remaining"));
+    }
+
+    @Test
+    void testForgedUserIdHeaderDoesNotGetFreshBucket() {
+        // Given - auth is off at the edge, so nothing strips client-supplied identity headers
+        for (int i = 0; i < 2; i++) {
+            filter.filter(forgedExchange("/iam/api/v1/auth/login", "10.0.0.1", "forged-" + i), chain).block();
+        }
+
+        // When
+        MockServerWebExchange rejected = forgedExchange("/iam/api/v1/auth/login", "10.0.0.1", "forged-new");
+        filter.filter(rejected, chain).block();
+
+        // Then
+        assertEquals(2, forwarded.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testGlobalLimitAppliesPerIpAcrossUsers() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            filter.filter(exchange("/iam/api/v1/users/me", "10.0.0.1", "user-" + i), chain).block();
+        }
+
+        // When
+        MockServerWebExchange rejected = exchange("/iam/api/v1/users/me", "10.0.0.1", "user-new");
+        filter.filter(rejected, chain).block();
+
+        // Then
+        assertEquals(5, forwarded.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+    }
+
+    private static MockServerWebExchange forgedExchange(String path, String ip, String forgedUserId) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post(path)
+            .remoteAddress(new InetSocketAddress(ip, 40000))
+            .header(IdentityHeaderSigner.USER_ID, forgedUserId));
+    }
+
+    private static RateLimitProperties.Tier tier(String name, String path, int requests) {
+        RateLimitProperties.Tier tier = new RateLimitProperties.Tier();
+        tier.setName(name);
+        tier.setPaths(List.of(path));
+        tier.setRequests(requests);
+        tier.setDuration(Duration.ofMinutes(1));
+        return tier;
+    }
+
+    // The user id is set the way JwtAuthenticationFilter does after verifying a token
+    private static MockServerWebExchange exchange(String path, String ip, String userId) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(path)
+            .remoteAddress(new InetSocketAddress(ip, 40000)));
+        if (userId != null) {
+            exchange.getAttributes().put(JwtAuthenticationFilter.VERIFIED_USER_ID_ATTRIBUTE, userId);
+        }
+        return exchange;
+    }
+}
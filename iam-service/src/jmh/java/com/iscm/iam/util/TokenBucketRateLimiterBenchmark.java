@@ -0,0 +1,60 @@
+package com.iscm.iam.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of rate limit checks on one hot key (every thread contends on one bucket) and
+ * spread over many keys (the usual per-IP case).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class TokenBucketRateLimiterBenchmark {
+
+    @Param({"10000"})
+    private int keyCount;
+
+    private TokenBucketRateLimiter limiter;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new TokenBucketRateLimiter(TokenBucketRateLimiter.MAX_CAPACITY, Duration.ofSeconds(1),
+                64, 100000, Clock.systemUTC());
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "api:10.0." + (i >> 8) + "." + (i & 0xff);
+        }
+    }
+
+    @Benchmark
+    public boolean hotKey() {
+        return limiter.tryAcquire(keys[0]);
+    }
+
+    @Benchmark
+    public boolean spreadKeys() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+}
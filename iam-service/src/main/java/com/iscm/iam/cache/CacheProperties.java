@@ -0,0 +1,49 @@
+package com.iscm.iam.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    private boolean enabled = true;
+
+    private Local local = new Local();
+    private Redis redis = new Redis();
+
+    // Lifetime in Redis per cache; caches not listed use defaultTtl
+    private Duration defaultTtl = Duration.ofMinutes(30);
+    private Map<String, Duration> ttl = new HashMap<>(Map.of(
+        "users", Duration.ofHours(1),
+        "userRoles", Duration.ofHours(2),
+        "organizations", Duration.ofHours(6),
+        "permissions", Duration.ofHours(4),
+        "statistics", Duration.ofMinutes(2)
+    ));
+
+    public Duration ttlFor(String cacheName) {
+        return ttl.getOrDefault(cacheName, defaultTtl);
+    }
+
+    @Data
+    public static class Local {
+        private long maxSize = 10000;
+        // Bounds how long an entry changed on another node can be served from this node's memory
+        private Duration ttl = Duration.ofSeconds(30);
+        // Scales how early reads start refreshing an entry before it expires; 0 turns it off
+        private double earlyRefreshBeta = 1.0;
+    }
+
+    @Data
+    public static class Redis {
+        private boolean enabled = false;
+        private String keyPrefix = "iam:cache:";
+        // After a Redis failure, serve from memory and the database for this long before retrying
+        private Duration retryInterval = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,20 @@
+package com.iscm.iam.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What authenticating a request needs to know about a user. Deliberately excludes the password
+ * hash and other personal data, so nothing sensitive is copied into Redis.
+ */
+public record CachedUser(UUID id, String email, UUID tenantId, boolean active,
+                         LocalDateTime accountLockedUntil, List<String> roles) {
+
+    @JsonIgnore
+    public boolean isAccountNonLocked() {
+        return accountLockedUntil == null || accountLockedUntil.isBefore(LocalDateTime.now());
+    }
+}
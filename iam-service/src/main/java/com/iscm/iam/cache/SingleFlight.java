@@ -0,0 +1,91 @@
+package com.iscm.iam.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader and every caller
+ * arriving while it runs waits for and shares its result, or its exception. Nothing is kept once
+ * the load finishes, so results must be safe to share between threads.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V load(K key, Function<K, V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        return run(key, call, loader);
+    }
+
+    /**
+     * Runs the loader unless a load of the key is already running, in which case it returns
+     * {@code false} at once instead of waiting for it.
+     */
+    public boolean tryLoad(K key, Function<K, V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, call) != null) {
+            coalesced.increment();
+            return false;
+        }
+        run(key, call, loader);
+        return true;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("iam.cache.loads.coalesced", coalesced, LongAdder::sum)
+                .tag("cache", name).register(registry);
+    }
+
+    private V run(K key, CompletableFuture<V> call, Function<K, V> loader) {
+        try {
+            V value = loader.apply(key);
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // Rethrow what the loader threw, e.g. UsernameNotFoundException
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
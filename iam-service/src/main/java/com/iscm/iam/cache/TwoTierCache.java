@@ -0,0 +1,422 @@
+package com.iscm.iam.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache with a bounded in-process tier in front of Redis. Reads try memory, then
+ * Redis, then the loader; loaded values are written to both tiers, and concurrent misses for a key
+ * share one load. Every Redis key is recorded in the cache's index set and in a set per tag, so
+ * clearing the cache or a tag walks those sets with SSCAN instead of running KEYS. A Redis failure disables the Redis tier for the retry interval,
+ * during which reads go to memory and the loader only. Evictions that could not reach Redis are
+ * remembered and replayed before Redis is read or written again, so it never serves an entry
+ * evicted while it was unreachable.
+ */
+@Slf4j
+public class TwoTierCache<V> {
+
+    private static final int DELETE_BATCH_SIZE = 500;
+    // Beyond this many missed key evictions the whole cache is cleared in Redis instead
+    private static final int MAX_PENDING_EVICTIONS = 10_000;
+
+    private final String name;
+    private final Class<V> type;
+    private final Function<V, Collection<String>> tagsOf;
+    private final Cache<String, Entry<V>> local;
+    private final long localTtlNanos;
+    private final double earlyRefreshBeta;
+    private final SingleFlight<String, V> loads;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final String keyPrefix;
+    private final Duration remoteTtl;
+    private final long retryIntervalMillis;
+
+    private volatile long remoteRetryAt;
+
+    // Redis keys, and index or tag sets whose members, still to be deleted from Redis
+    private final Set<String> pendingKeyEvictions = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingSetEvictions = ConcurrentHashMap.newKeySet();
+
+    // Bumped by every eviction; a load that overlapped one does not store what it read
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+    private final LongAdder remoteErrors = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param redis null to run with the in-process tier only
+     * @param tagsOf tags an entry is filed under for {@link #evictTag}; may return an empty set
+     * @param earlyRefreshBeta how eagerly reads refresh an entry before it expires; 0 disables it
+     */
+    public TwoTierCache(String name, Class<V> type, Function<V, Collection<String>> tagsOf,
+                        long localMaxSize, Duration localTtl, StringRedisTemplate redis,
+                        ObjectMapper objectMapper, String keyPrefix, Duration remoteTtl, Duration retryInterval,
+                        double earlyRefreshBeta) {
+        this.name = name;
+        this.type = type;
+        this.tagsOf = tagsOf;
+        // Never keep an entry in memory longer than Redis would
+        Duration effectiveLocalTtl = localTtl.compareTo(remoteTtl) < 0 ? localTtl : remoteTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(effectiveLocalTtl)
+                .build();
+        this.localTtlNanos = effectiveLocalTtl.toNanos();
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.loads = new SingleFlight<>(name);
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+        this.keyPrefix = keyPrefix + name + ":";
+        this.remoteTtl = remoteTtl;
+        this.retryIntervalMillis = retryInterval.toMillis();
+    }
+
+    /**
+     * Returns the cached value, loading it on a miss. Concurrent misses for a key share one load,
+     * and a read close to an entry's expiry may refresh it early while other reads keep getting
+     * the current value, so a hot key does not send every request to the loader when it expires.
+     */
+    public V get(String key, Function<String, V> loader) {
+        Entry<V> entry = local.getIfPresent(key);
+        if (entry != null) {
+            localHits.increment();
+            if (shouldRefreshEarly(entry) && loads.tryLoad(key, k -> load(k, loader))) {
+                earlyRefreshes.increment();
+            }
+            return entry.value();
+        }
+        return loads.load(key, k -> load(k, loader));
+    }
+
+    public V getIfPresent(String key) {
+        Entry<V> entry = local.getIfPresent(key);
+        return entry != null ? entry.value() : readRemote(key);
+    }
+
+    public void put(String key, V value) {
+        putLocal(key, value, 0);
+        putRemote(key, value);
+    }
+
+    public void evict(String key) {
+        invalidations.incrementAndGet();
+        evictions.increment();
+        local.invalidate(key);
+        if (!remoteAvailable()) {
+            deferEviction(redisKey(key));
+            return;
+        }
+        try {
+            redis.delete(redisKey(key));
+        } catch (DataAccessException e) {
+            remoteFailed(e);
+            deferEviction(redisKey(key));
+        }
+    }
+
+    /**
+     * Evicts every entry filed under the tag, on this node and in Redis.
+     */
+    public void evictTag(String tag) {
+        invalidations.incrementAndGet();
+        local.asMap().entrySet().removeIf(entry -> tagsOf.apply(entry.getValue().value()).contains(tag));
+        deleteMembersOf(tagKey(tag));
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        local.invalidateAll();
+        deleteMembersOf(indexKey());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long localSize() {
+        return local.estimatedSize();
+    }
+
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    public long getRemoteHits() {
+        return remoteHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEarlyRefreshes() {
+        return earlyRefreshes.sum();
+    }
+
+    public long getCoalescedLoads() {
+        return loads.getCoalesced();
+    }
+
+    public long getRemoteErrors() {
+        return remoteErrors.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public boolean isRemoteEnabled() {
+        return redis != null;
+    }
+
+    public boolean isRemoteAvailable() {
+        return remoteAvailable();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("iam.cache.requests", localHits, LongAdder::sum)
+                .tags("cache", name, "result", "local_hit").register(registry);
+        FunctionCounter.builder("iam.cache.requests", remoteHits, LongAdder::sum)
+                .tags("cache", name, "result", "remote_hit").register(registry);
+        FunctionCounter.builder("iam.cache.requests", misses, LongAdder::sum)
+                .tags("cache", name, "result", "miss").register(registry);
+        FunctionCounter.builder("iam.cache.refreshes.early", earlyRefreshes, LongAdder::sum)
+                .tag("cache", name).register(registry);
+        loads.bindTo(registry);
+        FunctionCounter.builder("iam.cache.remote.errors", remoteErrors, LongAdder::sum)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("iam.cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", name).register(registry);
+        Gauge.builder("iam.cache.local.size", local, Cache::estimatedSize)
+                .tag("cache", name).register(registry);
+    }
+
+    private V load(String key, Function<String, V> loader) {
+        long generation = invalidations.get();
+        long start = System.nanoTime();
+        V value = readRemote(key);
+        boolean fromRemote = value != null;
+        if (fromRemote) {
+            remoteHits.increment();
+        } else {
+            misses.increment();
+            value = loader.apply(key);
+            if (value == null) {
+                return null;
+            }
+        }
+        if (invalidations.get() == generation) {
+            putLocal(key, value, System.nanoTime() - start);
+            if (!fromRemote) {
+                putRemote(key, value);
+            }
+        }
+        return value;
+    }
+
+    // Probabilistic early expiry ("XFetch"): the slower the load and the nearer the expiry, the likelier
+    private boolean shouldRefreshEarly(Entry<V> entry) {
+        if (earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double headStart = entry.loadNanos() * earlyRefreshBeta * -Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.nanoTime() + headStart >= entry.expiresAtNanos();
+    }
+
+    private void putLocal(String key, V value, long loadNanos) {
+        local.put(key, new Entry<>(value, System.nanoTime() + localTtlNanos, loadNanos));
+    }
+
+    private void putRemote(String key, V value) {
+        if (!remoteAvailable()) {
+            return;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(value);
+            String redisKey = redisKey(key);
+            long ttlSeconds = remoteTtl.toSeconds();
+            Collection<String> tags = tagsOf.apply(value);
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection commands = (StringRedisConnection) connection;
+                commands.setEx(redisKey, ttlSeconds, json);
+                // Index sets live as long as their newest member, so idle ones expire on their own
+                commands.sAdd(indexKey(), redisKey);
+                commands.expire(indexKey(), ttlSeconds);
+                for (String tag : tags) {
+                    commands.sAdd(tagKey(tag), redisKey);
+                    commands.expire(tagKey(tag), ttlSeconds);
+                }
+                return null;
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot serialise {} entry {} for Redis: {}", name, key, e.getMessage());
+        } catch (DataAccessException e) {
+            remoteFailed(e);
+        }
+    }
+
+    private V readRemote(String key) {
+        if (!remoteAvailable()) {
+            return null;
+        }
+        String json;
+        try {
+            json = redis.opsForValue().get(redisKey(key));
+        } catch (DataAccessException e) {
+            remoteFailed(e);
+            return null;
+        }
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            // Written by an incompatible version; reload it from the source
+            log.debug("Discarding unreadable {} entry {}: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteMembersOf(String setKey) {
+        if (!remoteAvailable()) {
+            deferSetEviction(setKey);
+            return;
+        }
+        try {
+            deleteMembers(setKey);
+        } catch (DataAccessException e) {
+            remoteFailed(e);
+            deferSetEviction(setKey);
+        }
+    }
+
+    private void deleteMembers(String setKey) {
+        try (Cursor<String> members = redis.opsForSet().scan(setKey,
+                ScanOptions.scanOptions().count(DELETE_BATCH_SIZE).build())) {
+            List<String> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            while (members.hasNext()) {
+                batch.add(members.next());
+                if (batch.size() == DELETE_BATCH_SIZE) {
+                    deleteRemote(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                deleteRemote(batch);
+            }
+            redis.delete(setKey);
+        }
+    }
+
+    private void deleteRemote(List<String> redisKeys) {
+        Long deleted = redis.delete(redisKeys);
+        if (deleted != null) {
+            evictions.add(deleted);
+        }
+    }
+
+    private boolean remoteAvailable() {
+        return redis != null && System.currentTimeMillis() >= remoteRetryAt && replayPendingEvictions();
+    }
+
+    private void deferEviction(String redisKey) {
+        if (redis == null) {
+            return;
+        }
+        if (pendingKeyEvictions.size() < MAX_PENDING_EVICTIONS) {
+            pendingKeyEvictions.add(redisKey);
+        } else {
+            deferSetEviction(indexKey());
+        }
+    }
+
+    private void deferSetEviction(String setKey) {
+        if (redis != null) {
+            pendingSetEvictions.add(setKey);
+        }
+    }
+
+    // Deletes are idempotent, so threads replaying at the same time only repeat work
+    private boolean replayPendingEvictions() {
+        if (pendingKeyEvictions.isEmpty() && pendingSetEvictions.isEmpty()) {
+            return true;
+        }
+        try {
+            for (String setKey : pendingSetEvictions) {
+                deleteMembers(setKey);
+                pendingSetEvictions.remove(setKey);
+            }
+            List<String> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            for (String redisKey : pendingKeyEvictions) {
+                batch.add(redisKey);
+                if (batch.size() == DELETE_BATCH_SIZE) {
+                    redis.delete(batch);
+                    batch.forEach(pendingKeyEvictions::remove);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                redis.delete(batch);
+                batch.forEach(pendingKeyEvictions::remove);
+            }
+            log.info("Replayed evictions missed while Redis was unavailable for cache {}", name);
+            return true;
+        } catch (DataAccessException e) {
+            remoteFailed(e);
+            return false;
+        }
+    }
+
+    private void remoteFailed(DataAccessException e) {
+        remoteErrors.increment();
+        if (System.currentTimeMillis() >= remoteRetryAt) {
+            log.warn("Redis unavailable for cache {}, using memory and the database for {} ms: {}",
+                    name, retryIntervalMillis, e.getMessage());
+        }
+        remoteRetryAt = System.currentTimeMillis() + retryIntervalMillis;
+    }
+
+    private String redisKey(String key) {
+        return keyPrefix + key;
+    }
+
+    private String indexKey() {
+        return keyPrefix + "_keys";
+    }
+
+    private String tagKey(String tag) {
+        return keyPrefix + "_tag:" + tag;
+    }
+
+    private record Entry<V>(V value, long expiresAtNanos, long loadNanos) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.iscm.iam.config;
+
+import com.iscm.iam.security.BulkheadPasswordEncoder;
+import com.iscm.iam.security.UnlimitedLengthPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Slf4j
+@Configuration
+public class PasswordHashingConfig {
+
+    @Value("${app.security.password.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${app.security.password.bcrypt.cost:12}")
+    private int bcryptCost;
+
+    // Measure this host at startup and pick the cost that fits the target latency
+    @Value("${app.security.password.bcrypt.calibrate:false}")
+    private boolean calibrateBcryptCost;
+
+    @Value("${app.security.password.bcrypt.target-ms:250}")
+    private long bcryptTargetMillis;
+
+    @Value("${app.security.password.bcrypt.min-cost:10}")
+    private int bcryptMinCost;
+
+    @Value("${app.security.password.bcrypt.max-cost:14}")
+    private int bcryptMaxCost;
+
+    @Value("${app.security.password.argon2.salt-length:16}")
+    private int argon2SaltLength;
+
+    @Value("${app.security.password.argon2.hash-length:32}")
+    private int argon2HashLength;
+
+    @Value("${app.security.password.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    @Value("${app.security.password.argon2.memory-kb:19456}")
+    private int argon2MemoryKb;
+
+    @Value("${app.security.password.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    // 0 means one thread per available processor
+    @Value("${app.security.password.executor.threads:0}")
+    private int executorThreads;
+
+    @Value("${app.security.password.executor.queue-capacity:64}")
+    private int executorQueueCapacity;
+
+    @Value("${app.security.password.executor.max-wait-ms:5000}")
+    private long executorMaxWaitMillis;
+
+    @Bean(destroyMethod = "shutdown")
+    public BulkheadPasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        int cost = bcryptCost;
+        if (calibrateBcryptCost) {
+            cost = UnlimitedLengthPasswordEncoder.calibrateBCryptCost(bcryptTargetMillis, bcryptMinCost, bcryptMaxCost);
+            log.info("Calibrated BCrypt cost {} for a {} ms target", cost, bcryptTargetMillis);
+        }
+        PasswordEncoder delegate = new UnlimitedLengthPasswordEncoder(
+                UnlimitedLengthPasswordEncoder.Algorithm.valueOf(algorithm.trim().toUpperCase()),
+                cost,
+                new Argon2PasswordEncoder(argon2SaltLength, argon2HashLength, argon2Parallelism,
+                        argon2MemoryKb, argon2Iterations));
+
+        int threads = executorThreads > 0 ? executorThreads : Runtime.getRuntime().availableProcessors();
+        return new BulkheadPasswordEncoder(delegate, threads, executorQueueCapacity, executorMaxWaitMillis,
+                meterRegistry);
+    }
+}
@@ -6,14 +6,26 @@ import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 
+/**
+ * Rate limit tiers. Each allows {@code requests} per {@code duration} per key; a key refused
+ * {@code burstLimit} times is then refused outright until the allowance recovers over
+ * {@code burstRecovery}.
+ */
 @Data
-//@Component
-//@ConfigurationProperties(prefix = "app.rate-limit")
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
 public class RateLimitProperties {
 
     private Auth auth = new Auth();
     private Api api = new Api();
     private Admin admin = new Admin();
+    private Global global = new Global();
+
+    // In-memory bucket storage, per limit
+    private int stripes = 64;
+    private int maxKeys = 100000;
+
+    private Redis redis = new Redis();
 
     @Data
     public static class Auth implements RateLimitConfig {
@@ -39,10 +51,32 @@ public class RateLimitProperties {
         private Duration burstRecovery = Duration.ofMinutes(5);
     }
 
+    // Every request from a client, whatever it targets
+    @Data
+    public static class Global implements RateLimitConfig {
+        private int requests = 1000;
+        private Duration duration = Duration.ofMinutes(1);
+        private int burstLimit = 100;
+        private Duration burstRecovery = Duration.ofMinutes(10);
+    }
+
+    // Limits shared by all nodes through Redis; without it each node enforces them alone
+    @Data
+    public static class Redis {
+        private boolean enabled = false;
+        private String keyPrefix = "iam:rate-limit:";
+        // Share of a limit a node leases at a time and then admits locally
+        private double leaseFraction = 0.05;
+        // Leased tokens not used within this time are dropped, still counted in Redis
+        private Duration leaseTtl = Duration.ofSeconds(1);
+        // After a Redis failure, enforce per-node limits for this long before retrying
+        private Duration retryInterval = Duration.ofSeconds(30);
+    }
+
     public interface RateLimitConfig {
         int getRequests();
         Duration getDuration();
         int getBurstLimit();
         Duration getBurstRecovery();
     }
-}
\ No newline at end of file
+}
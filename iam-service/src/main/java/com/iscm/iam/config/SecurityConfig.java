@@ -2,6 +2,7 @@ package com.iscm.iam.config;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,7 +25,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iscm.iam.security.CustomAccessDeniedHandler;
 import com.iscm.iam.security.JwtAuthenticationEntryPoint;
 import com.iscm.iam.security.JwtAuthenticationFilter;
-import com.iscm.iam.security.UnlimitedLengthPasswordEncoder;
+import com.iscm.iam.security.PermissionChecker;
+import com.iscm.iam.security.RateLimitingFilter;
 import com.iscm.iam.service.UserService;
 
 @Configuration
@@ -38,20 +40,19 @@ import com.iscm.iam.service.UserService;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitingFilter rateLimitingFilter;
     private final UserService userService;
     private final JwtAuthenticationEntryPoint authenticationEntryPoint;
     private final CustomAccessDeniedHandler accessDeniedHandler;
+    private final PermissionChecker permissionChecker;
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new UnlimitedLengthPasswordEncoder();
-    }
-
-    @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Re-hashes outdated hashes with the current algorithm and cost after a successful login
+        authProvider.setUserDetailsPasswordService(userService);
         return authProvider;
     }
 
@@ -100,6 +101,8 @@ public class SecurityConfig {
                 .requestMatchers(
                     "/home",
                     "/api/v1/auth/**",
+                    "/.well-known/jwks.json",
+                    "/.well-known/permission-index.json",
                     "/swagger-ui/**",
                     "/v3/api-docs/**",
                     "/actuator/**"
@@ -113,8 +116,8 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/v1/users/me").authenticated()
                 .requestMatchers(HttpMethod.PUT, "/api/v1/users/me").authenticated()
                 .requestMatchers(HttpMethod.DELETE, "/api/v1/users/me").authenticated()
-                .requestMatchers(HttpMethod.GET, "/api/v1/users/{userId}").hasAnyAuthority("USER_READ")
-                .requestMatchers(HttpMethod.PUT, "/api/v1/users/{userId}").hasAnyAuthority("USER_WRITE")
+                .requestMatchers(HttpMethod.GET, "/api/v1/users/{userId}").access(permissionChecker.authority("USER_READ"))
+                .requestMatchers(HttpMethod.PUT, "/api/v1/users/{userId}").access(permissionChecker.authority("USER_WRITE"))
                 .requestMatchers(HttpMethod.DELETE, "/api/v1/users/{userId}").hasRole("SUPER_ADMIN")
                 
                 // Admin endpoints
@@ -140,11 +143,22 @@ public class SecurityConfig {
             )
             
             // Add JWT filter
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+
+            // Rate limit once the caller is known, so MFA is counted per user
+            .addFilterAfter(rateLimitingFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    // Only runs inside the security chain; as a servlet filter it would run before authentication
+    @Bean
+    public FilterRegistrationBean<RateLimitingFilter> rateLimitingFilterRegistration() {
+        FilterRegistrationBean<RateLimitingFilter> registration = new FilterRegistrationBean<>(rateLimitingFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
 
     @Bean
     @ConditionalOnProperty(name = "app.security.require-ssl", havingValue = "true")
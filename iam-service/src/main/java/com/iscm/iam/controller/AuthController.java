@@ -4,6 +4,7 @@ import com.iscm.iam.dto.AuthRequest;
 import com.iscm.iam.dto.AuthResponse;
 import com.iscm.iam.dto.RefreshTokenRequest;
 import com.iscm.iam.dto.RegisterRequest;
+import com.iscm.iam.security.ClientIpResolver;
 import com.iscm.iam.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -27,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final ClientIpResolver clientIpResolver;
 
     @PostMapping("/register")
     @Operation(
@@ -45,7 +47,7 @@ public class AuthController {
             HttpServletRequest httpRequest) {
         
         log.info("Registration attempt for email: {} from IP: {}", 
-                request.getEmail(), getClientIpAddress(httpRequest));
+                request.getEmail(), clientIpResolver.resolve(httpRequest));
         
         AuthResponse response = authService.register(request);
         return ResponseEntity.ok(response);
@@ -69,7 +71,7 @@ public class AuthController {
         
         // Extract client info from request
         request.setUserAgent(httpRequest.getHeader("User-Agent"));
-        request.setIpAddress(getClientIpAddress(httpRequest));
+        request.setIpAddress(clientIpResolver.resolve(httpRequest));
         
         log.info("Login attempt for email: {} from IP: {}", 
                 request.getEmail(), request.getIpAddress());
@@ -101,7 +103,8 @@ public class AuthController {
     @PostMapping("/logout")
     @Operation(
         summary = "Logout user",
-        description = "Invalidates the provided refresh token, logging the user out from the current session."
+        description = "Invalidates the provided refresh token, logging the user out from the current session. " +
+                      "A bearer access token sent with the request is revoked until it expires."
     )
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Logout successful"),
@@ -110,17 +113,13 @@ public class AuthController {
     })
     public ResponseEntity<Void> logout(
             @Parameter(description = "Refresh token to invalidate", required = true)
-            @Valid @RequestBody RefreshTokenRequest request) {
+            @Valid @RequestBody RefreshTokenRequest request,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
         
-        authService.logout(request.getRefreshToken());
+        String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7)
+                : null;
+        authService.logout(request.getRefreshToken(), accessToken);
         return ResponseEntity.ok().build();
     }
-
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
\ No newline at end of file
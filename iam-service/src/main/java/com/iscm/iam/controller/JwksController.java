@@ -0,0 +1,34 @@
+package com.iscm.iam.controller;
+
+import com.iscm.iam.security.JwtKeyManager;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "JWKS", description = "Public keys for verifying access tokens")
+public class JwksController {
+
+    private final JwtKeyManager keyManager;
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "JSON Web Key Set",
+        description = "Public keys for the active and still-accepted access token signing keys, served from memory."
+    )
+    public ResponseEntity<String> getJwks() {
+        String jwks = keyManager.getJwksJson();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(keyManager.getJwksMaxAgeSeconds())).cachePublic())
+                .eTag(Integer.toHexString(jwks.hashCode()))
+                .body(jwks);
+    }
+}
@@ -3,6 +3,7 @@ package com.iscm.iam.controller;
 import com.iscm.iam.dto.PasswordResetInitiateRequest;
 import com.iscm.iam.dto.PasswordResetRequest;
 import com.iscm.iam.dto.PasswordResetValidateRequest;
+import com.iscm.iam.security.ClientIpResolver;
 import com.iscm.iam.service.PasswordResetService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class PasswordResetController {
 
     private final PasswordResetService passwordResetService;
+    private final ClientIpResolver clientIpResolver;
 
     @PostMapping("/initiate")
     @Operation(
@@ -40,7 +42,7 @@ public class PasswordResetController {
             @Valid @RequestBody PasswordResetInitiateRequest request,
             HttpServletRequest httpRequest) {
 
-        String ipAddress = getClientIpAddress(httpRequest);
+        String ipAddress = clientIpResolver.resolve(httpRequest);
         String userAgent = httpRequest.getHeader("User-Agent");
 
         passwordResetService.initiatePasswordReset(
@@ -68,7 +70,7 @@ public class PasswordResetController {
             @Valid @RequestBody PasswordResetRequest request,
             HttpServletRequest httpRequest) {
 
-        String ipAddress = getClientIpAddress(httpRequest);
+        String ipAddress = clientIpResolver.resolve(httpRequest);
         passwordResetService.resetPassword(
             request.getToken(),
             request.getNewPassword(),
@@ -95,12 +97,4 @@ public class PasswordResetController {
         boolean isValid = passwordResetService.validateResetToken(request.getToken());
         return ResponseEntity.ok(isValid);
     }
-
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
\ No newline at end of file
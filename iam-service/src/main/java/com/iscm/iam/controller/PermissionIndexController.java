@@ -0,0 +1,35 @@
+package com.iscm.iam.controller;
+
+import com.iscm.iam.service.RolePermissionSnapshot;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Permission Index", description = "Bit positions for decoding the perms access token claim")
+public class PermissionIndexController {
+
+    private final RolePermissionSnapshot rolePermissionSnapshot;
+
+    @GetMapping(value = "/.well-known/permission-index.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Permission bit index",
+        description = "Permission code to bit position in the perms claim bitmap, served from memory. Positions never change."
+    )
+    public ResponseEntity<Map<String, Object>> getPermissionIndex() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(Map.of(
+                    "version", rolePermissionSnapshot.getVersion(),
+                    "permissions", rolePermissionSnapshot.getPermissionIndex().asMap()));
+    }
+}
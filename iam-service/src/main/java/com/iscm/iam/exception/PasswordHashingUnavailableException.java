@@ -0,0 +1,11 @@
+package com.iscm.iam.exception;
+
+/**
+ * The password hashing pool is saturated; the request should be retried shortly
+ */
+public class PasswordHashingUnavailableException extends RuntimeException {
+
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+}
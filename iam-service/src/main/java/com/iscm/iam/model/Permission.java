@@ -27,6 +27,10 @@ public class Permission extends BaseEntity {
     private String code;
     
     private String description;
+
+    // Stable bit position for permission bitsets and token bitmaps; assigned by the database, never reused
+    @Column(name = "bit_index", insertable = false, updatable = false)
+    private Integer bitIndex;
     
     @ManyToMany(mappedBy = "permissions")
     private List<Role> roles = new ArrayList<>();
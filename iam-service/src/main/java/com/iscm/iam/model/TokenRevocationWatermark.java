@@ -0,0 +1,58 @@
+package com.iscm.iam.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * "Access tokens issued at or before this millisecond are invalid" for a user or a whole tenant.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revocation_watermarks")
+@IdClass(TokenRevocationWatermark.Key.class)
+public class TokenRevocationWatermark {
+
+    public enum SubjectType { USER, TENANT }
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "subject_type", length = 10)
+    private SubjectType subjectType;
+
+    @Id
+    @Column(name = "subject_id")
+    private UUID subjectId;
+
+    // Compared directly against the token's millisecond issued-at claim, hence epoch millis
+    @Column(name = "revoked_before_millis", nullable = false)
+    private Long revokedBeforeMillis;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private SubjectType subjectType;
+        private UUID subjectId;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && subjectType == other.subjectType && subjectId.equals(other.subjectId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * subjectType.hashCode() + subjectId.hashCode();
+        }
+    }
+}
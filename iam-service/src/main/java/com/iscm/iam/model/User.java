@@ -60,7 +60,8 @@ public class User extends BaseEntity{
     @Builder.Default
     private String authProvider = "LOCAL";
 
-    @Column(name = "last_login_at")
+    // Written in batches by ActivityWriteBehindBuffer, so entity saves must not overwrite it
+    @Column(name = "last_login_at", updatable = false)
     private LocalDateTime lastLoginAt;
 
     @Column(name = "failed_login_attempts")
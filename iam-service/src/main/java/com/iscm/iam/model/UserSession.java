@@ -9,10 +9,12 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
+// Range-partitioned by day on expires_at; the database primary key is (id, expires_at)
 @Table(name = "user_sessions", 
        indexes = {
-           @Index(name = "idx_user_sessions_user", columnList = "user_id"),
-           @Index(name = "idx_user_sessions_expires", columnList = "expires_at")
+           @Index(name = "idx_user_sessions_user_id_active", columnList = "user_id, revoked, expires_at"),
+           @Index(name = "idx_user_sessions_refresh_token_hash", columnList = "refresh_token_hash"),
+           @Index(name = "idx_user_sessions_previous_refresh_token_hash", columnList = "previous_refresh_token_hash")
        })
 public class UserSession extends BaseEntity {
     
@@ -22,6 +24,10 @@ public class UserSession extends BaseEntity {
     
     @Column(name = "refresh_token_hash", nullable = false)
     private String refreshTokenHash;
+
+    // Digest of the token replaced by the last rotation, kept to detect replays
+    @Column(name = "previous_refresh_token_hash")
+    private String previousRefreshTokenHash;
     
     @Column(name = "user_agent")
     private String userAgent;
@@ -33,4 +39,8 @@ public class UserSession extends BaseEntity {
     private LocalDateTime expiresAt;
     
     private Boolean revoked = false;
+
+    // Written in batches by ActivityWriteBehindBuffer, never by entity saves
+    @Column(name = "last_accessed_at", insertable = false, updatable = false)
+    private LocalDateTime lastAccessedAt;
 }
\ No newline at end of file
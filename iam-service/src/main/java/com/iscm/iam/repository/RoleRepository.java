@@ -24,5 +24,13 @@ public interface RoleRepository extends JpaRepository<Role, UUID> {
     @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions WHERE r.id IN :roleIds")
     List<Role> findRolesWithPermissions(@Param("roleIds") List<UUID> roleIds);
 
+    // Full role -> permission graph, used to build the in-memory authorization snapshot
+    @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions")
+    List<Role> findAllWithPermissions();
+
+    // Bumped by database triggers on any change to roles, permissions or role_permissions
+    @Query(value = "SELECT version FROM authorization_version WHERE id = 1", nativeQuery = true)
+    Optional<Long> findAuthorizationVersion();
+
     Boolean existsByName(String name);
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.iscm.iam.repository;
+
+import com.iscm.iam.model.TokenRevocationWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TokenRevocationWatermarkRepository
+        extends JpaRepository<TokenRevocationWatermark, TokenRevocationWatermark.Key> {
+
+    // Watermarks only move forward
+    @Modifying
+    @Query(value = """
+        INSERT INTO token_revocation_watermarks (subject_type, subject_id, revoked_before_millis, updated_at)
+        VALUES (:subjectType, :subjectId, :revokedBefore, now())
+        ON CONFLICT (subject_type, subject_id) DO UPDATE
+        SET revoked_before_millis = GREATEST(token_revocation_watermarks.revoked_before_millis, EXCLUDED.revoked_before_millis),
+            updated_at = now()
+        """, nativeQuery = true)
+    void upsertWatermark(@Param("subjectType") String subjectType,
+                         @Param("subjectId") UUID subjectId,
+                         @Param("revokedBefore") long revokedBefore);
+
+    // Older watermarks cannot match any unexpired token
+    @Query("SELECT w FROM TokenRevocationWatermark w WHERE w.revokedBeforeMillis > :cutoff")
+    List<TokenRevocationWatermark> findActiveWatermarks(@Param("cutoff") long cutoff);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocationWatermark w WHERE w.revokedBeforeMillis <= :cutoff")
+    int deleteExpiredWatermarks(@Param("cutoff") long cutoff);
+}
@@ -1,11 +1,14 @@
 package com.iscm.iam.repository;
 
 import com.iscm.iam.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -57,6 +60,11 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     // ========== Performance Optimized Queries ==========
 
     // Optimized authentication queries
+    // Login reads the user and its roles in one statement; read-only, so nothing is flushed back
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.userRoles ur LEFT JOIN FETCH ur.role WHERE u.email = :email")
+    Optional<User> findForLogin(@Param("email") String email);
+
     @Query("SELECT u FROM User u WHERE u.email = :email AND (u.accountLockedUntil IS NULL OR u.accountLockedUntil < :now) AND u.isActive = true")
     Optional<User> findActiveUserByEmail(@Param("email") String email, @Param("now") LocalDateTime now);
 
@@ -103,6 +111,14 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     @Query("UPDATE User u SET u.accountLockedUntil = :lockTime WHERE u.id = :userId")
     int lockAccount(@Param("userId") UUID userId, @Param("lockTime") LocalDateTime lockTime);
 
+    @Modifying
+    @Query("UPDATE User u SET u.failedLoginAttempts = :attempts, u.accountLockedUntil = :lockTime, u.version = u.version + 1 WHERE u.id = :userId")
+    int recordFailedLogin(@Param("userId") UUID userId, @Param("attempts") int attempts, @Param("lockTime") LocalDateTime lockTime);
+
+    @Modifying
+    @Query("UPDATE User u SET u.passwordHash = :passwordHash, u.version = u.version + 1 WHERE u.id = :userId")
+    int updatePasswordHash(@Param("userId") UUID userId, @Param("passwordHash") String passwordHash);
+
     // Tenant-aware queries for multi-tenancy
     @Query("SELECT u FROM User u WHERE u.tenantId = :tenantId AND u.isActive = true ORDER BY u.createdAt DESC")
     Page<User> findActiveUsersByTenant(@Param("tenantId") UUID tenantId, Pageable pageable);
@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,14 +24,16 @@ public interface UserSessionRepository extends JpaRepository<UserSession, UUID>
     @Query("SELECT us FROM UserSession us WHERE us.expiresAt < :now AND us.revoked = false")
     List<UserSession> findExpiredSessions(@Param("now") LocalDateTime now);
     
+    // user_sessions is partitioned by expires_at; the expiresAt bound limits these to live partitions
     @Modifying
-    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.user.id = :userId")
-    void revokeAllUserSessions(@Param("userId") UUID userId);
+    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.user.id = :userId AND us.expiresAt > :now")
+    void revokeAllUserSessions(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
     
     @Modifying
-    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.id = :sessionId")
-    void revokeSession(@Param("sessionId") UUID sessionId);
+    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.id = :sessionId AND us.expiresAt > :now")
+    void revokeSession(@Param("sessionId") UUID sessionId, @Param("now") LocalDateTime now);
     
+    // Retention normally drops whole partitions (see SessionPartitionMaintainer)
     @Modifying
     @Query("DELETE FROM UserSession us WHERE us.expiresAt < :cutoff")
     void deleteExpiredSessions(@Param("cutoff") LocalDateTime cutoff);
@@ -42,6 +46,38 @@ public interface UserSessionRepository extends JpaRepository<UserSession, UUID>
     @Query("SELECT us FROM UserSession us WHERE us.refreshTokenHash = :tokenHash AND us.revoked = false AND us.expiresAt > :now")
     Optional<UserSession> findByRefreshTokenHashAndValid(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now);
 
+    // Re-reads a cached session by its full primary key, so only its partition is probed; the digest
+    // must still be the current one, which rejects tokens rotated out on another node
+    @Query("SELECT us FROM UserSession us WHERE us.id = :id AND us.expiresAt = :expiresAt AND us.refreshTokenHash = :tokenHash AND us.revoked = false AND us.expiresAt > :now")
+    Optional<UserSession> findValidSessionByKey(@Param("id") UUID id,
+                                                @Param("expiresAt") LocalDateTime expiresAt,
+                                                @Param("tokenHash") String tokenHash,
+                                                @Param("now") LocalDateTime now);
+
+    // Inserts a session and revokes the user's sessions beyond the limit in one round trip; returns the revoked ids
+    @Query(value = """
+        SELECT * FROM create_user_session(:id, :userId, :tokenHash, CAST(:userAgent AS TEXT),
+                                          CAST(:ipAddress AS VARCHAR), :expiresAt, :now, :maxSessions)
+        """, nativeQuery = true)
+    List<UUID> createSessionWithinLimit(@Param("id") UUID id,
+                                        @Param("userId") UUID userId,
+                                        @Param("tokenHash") String tokenHash,
+                                        @Param("userAgent") String userAgent,
+                                        @Param("ipAddress") String ipAddress,
+                                        @Param("expiresAt") LocalDateTime expiresAt,
+                                        @Param("now") LocalDateTime now,
+                                        @Param("maxSessions") int maxSessions);
+
+    // A rotated-out refresh token was presented again: revoke the session it belonged to. Runs in its
+    // own transaction so the revocation survives the rejected refresh rolling back.
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = """
+        UPDATE user_sessions SET revoked = true, updated_at = :now, version = version + 1
+        WHERE previous_refresh_token_hash = :tokenHash AND revoked = false AND expires_at > :now
+        RETURNING id
+        """, nativeQuery = true)
+    List<UUID> revokeByPreviousRefreshTokenHash(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now);
+
     // Optimized session validation queries
     @Query("SELECT us FROM UserSession us WHERE us.user.id = :userId AND us.revoked = false AND us.expiresAt > :now ORDER BY us.createdAt DESC")
     List<UserSession> findActiveSessionsByUser(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
@@ -61,11 +97,10 @@ public interface UserSessionRepository extends JpaRepository<UserSession, UUID>
 
     // Batch operations for better performance
     @Modifying
-    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.user.id IN :userIds")
-    int revokeSessionsForUsers(@Param("userIds") List<UUID> userIds);
+    @Query("UPDATE UserSession us SET us.revoked = true WHERE us.user.id IN :userIds AND us.expiresAt > :now")
+    int revokeSessionsForUsers(@Param("userIds") List<UUID> userIds, @Param("now") LocalDateTime now);
 
-    // Note: updateLastAccessed removed since UserSession entity doesn't have lastAccessedAt field
-    // Can be re-added if the field is added to the entity in the future
+    // last_accessed_at is written in batches by ActivityWriteBehindBuffer
 
     // Performance monitoring queries
     @Query("SELECT COUNT(us) FROM UserSession us WHERE us.revoked = false AND us.expiresAt > :now")
@@ -0,0 +1,98 @@
+package com.iscm.iam.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common receive path for propagation backends: drops this node's own events, records
+ * propagation lag and hands the event to the local revocation services.
+ */
+@Slf4j
+public abstract class AbstractRevocationPropagator implements RevocationPropagator {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Timer lagTimer;
+    private final Counter publishedEvents;
+    private final Counter receivedEvents;
+    private final Counter catchUpEvents;
+    private final Counter publishFailures;
+
+    protected AbstractRevocationPropagator(String backend, ApplicationEventPublisher eventPublisher,
+                                           MeterRegistry meterRegistry) {
+        this.eventPublisher = eventPublisher;
+        this.lagTimer = Timer.builder("iam.revocation.propagation.lag")
+                .description("Time from publishing a revocation on one node to applying it on another")
+                .tag("backend", backend)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.publishedEvents = events(meterRegistry, backend, "published");
+        this.receivedEvents = events(meterRegistry, backend, "received");
+        this.catchUpEvents = events(meterRegistry, backend, "catch-up");
+        this.publishFailures = Counter.builder("iam.revocation.propagation.failures")
+                .tag("backend", backend)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Applies an event from another node.
+     * @param catchUp true when replayed after a (re)connect; lag is only recorded for live events
+     */
+    protected void deliver(RevocationEvent event, boolean catchUp) {
+        if (nodeId.equals(event.origin())) {
+            return;
+        }
+        if (catchUp) {
+            catchUpEvents.increment();
+        } else {
+            receivedEvents.increment();
+            lagTimer.record(Math.max(0, System.currentTimeMillis() - event.publishedAt()), TimeUnit.MILLISECONDS);
+        }
+        eventPublisher.publishEvent(event);
+    }
+
+    protected void deliver(String encoded, boolean catchUp) {
+        try {
+            deliver(RevocationEvent.decode(encoded), catchUp);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed revocation event: {}", e.getMessage());
+        }
+    }
+
+    protected void recordPublished() {
+        publishedEvents.increment();
+    }
+
+    protected void recordPublishFailure(RevocationEvent event, Exception e) {
+        publishFailures.increment();
+        log.warn("Failed to propagate {} revocation of {}, other nodes will not see it: {}",
+                event.type(), event.subject(), e.getMessage());
+    }
+
+    /**
+     * Catch-up never reaches further back than a live access token can have been issued
+     */
+    protected static long catchUpHorizonMillis(long accessTokenExpirationSeconds) {
+        return Instant.now().minusSeconds(accessTokenExpirationSeconds).toEpochMilli();
+    }
+
+    private static Counter events(MeterRegistry meterRegistry, String backend, String kind) {
+        return Counter.builder("iam.revocation.propagation.events")
+                .tag("backend", backend)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+}
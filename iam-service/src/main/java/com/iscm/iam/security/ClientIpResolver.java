@@ -0,0 +1,70 @@
+package com.iscm.iam.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolves the client address of a request for rate limiting, login attempt tracking and audit
+ * logs. X-Forwarded-For is only believed when the peer is a trusted proxy, so a client cannot
+ * pick the address its requests are counted against.
+ */
+@Component
+public class ClientIpResolver {
+
+    // Proxies (IPs or CIDR ranges) whose X-Forwarded-For entries are believed, e.g. the gateway
+    @Value("${app.security.rate-limiting.trusted-proxies:}")
+    private String[] trustedProxies;
+
+    private List<IpAddressMatcher> trustedProxyMatchers = List.of();
+
+    @PostConstruct
+    void init() {
+        trustedProxyMatchers = Arrays.stream(trustedProxies)
+                .filter(StringUtils::hasText)
+                .map(proxy -> new IpAddressMatcher(proxy.trim()))
+                .toList();
+    }
+
+    /**
+     * The peer address, unless it is a trusted proxy: then the nearest X-Forwarded-For entry not
+     * added by a trusted proxy. Entries further left are set by the client and never used.
+     */
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor == null || xForwardedFor.isBlank()) {
+            return remoteAddr;
+        }
+        String[] hops = xForwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        for (IpAddressMatcher matcher : trustedProxyMatchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false; // Not an IP address
+            }
+        }
+        return false;
+    }
+}
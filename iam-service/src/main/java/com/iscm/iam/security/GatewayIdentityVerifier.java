@@ -0,0 +1,143 @@
+package com.iscm.iam.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Accepts the identity headers the gateway forwards after verifying a bearer token at the edge.
+ * Headers are only trusted with a valid, fresh HMAC signature over the same canonical form the
+ * gateway's IdentityHeaderSigner produces; anything else falls back to JWT verification.
+ */
+@Slf4j
+@Component
+public class GatewayIdentityVerifier {
+
+    static final String USER_ID = "X-User-Id";
+    static final String USER_EMAIL = "X-User-Email";
+    static final String TENANT_ID = "X-Tenant-Id";
+    static final String ROLES = "X-Roles";
+    static final String TOKEN_ID = "X-Token-Id";
+    static final String TOKEN_ISSUED_AT = "X-Token-Issued-At";
+    static final String TOKEN_EXPIRES_AT = "X-Token-Expires-At";
+    static final String PERMISSIONS_VERSION = "X-Permissions-Version";
+    static final String SESSION_ID = "X-Session-Id";
+    static final String PERMISSIONS = "X-Permissions";
+    static final String IDENTITY_TIMESTAMP = "X-Identity-Timestamp";
+    static final String IDENTITY_SIGNATURE = "X-Identity-Signature";
+
+    // Canonical order, must match the gateway
+    private static final List<String> SIGNED_HEADERS = List.of(
+            USER_ID, USER_EMAIL, TENANT_ID, ROLES, TOKEN_ID, TOKEN_ISSUED_AT, TOKEN_EXPIRES_AT,
+            PERMISSIONS_VERSION, SESSION_ID, PERMISSIONS, IDENTITY_TIMESTAMP);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${app.security.gateway-trust.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.security.gateway-trust.secret:}")
+    private String secret;
+
+    @Value("${app.security.gateway-trust.max-age-ms:60000}")
+    private long maxAgeMillis;
+
+    private SecretKeySpec secretKey;
+
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::createMac);
+
+    @PostConstruct
+    private void init() {
+        if (enabled && StringUtils.isBlank(secret)) {
+            throw new IllegalStateException("app.security.gateway-trust.secret is required when gateway trust is enabled");
+        }
+        if (enabled) {
+            this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        }
+    }
+
+    /**
+     * @return claims equivalent to the verified token, or null if the request carries no trusted identity
+     */
+    public JwtUtil.JwtClaims verify(HttpServletRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        String signature = request.getHeader(IDENTITY_SIGNATURE);
+        if (signature == null) {
+            return null;
+        }
+        try {
+            long timestamp = Long.parseLong(request.getHeader(IDENTITY_TIMESTAMP));
+            long expiresAt = Long.parseLong(request.getHeader(TOKEN_EXPIRES_AT));
+            long now = System.currentTimeMillis();
+            if (Math.abs(now - timestamp) > maxAgeMillis || expiresAt <= now) {
+                return null;
+            }
+            if (!MessageDigest.isEqual(
+                    signature.getBytes(StandardCharsets.US_ASCII),
+                    sign(request).getBytes(StandardCharsets.US_ASCII))) {
+                log.warn("Rejected gateway identity headers with invalid signature from {}", request.getRemoteAddr());
+                return null;
+            }
+            return new JwtUtil.JwtClaims(toClaims(request, expiresAt));
+        } catch (RuntimeException e) {
+            log.debug("Ignoring malformed gateway identity headers: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Claims toClaims(HttpServletRequest request, long expiresAt) {
+        String roles = request.getHeader(ROLES);
+        String issuedAt = request.getHeader(TOKEN_ISSUED_AT);
+        String permissionsVersion = request.getHeader(PERMISSIONS_VERSION);
+        return Jwts.claims()
+                .subject(request.getHeader(USER_ID))
+                .id(request.getHeader(TOKEN_ID))
+                .issuedAt(issuedAt != null ? new Date(Long.parseLong(issuedAt)) : null)
+                .expiration(new Date(expiresAt))
+                .add("email", request.getHeader(USER_EMAIL))
+                .add("tenantId", request.getHeader(TENANT_ID))
+                .add("roles", StringUtils.isEmpty(roles) ? List.of() : Arrays.asList(roles.split(",")))
+                .add(JwtUtil.PERMISSIONS_VERSION_CLAIM, permissionsVersion != null ? Long.valueOf(permissionsVersion) : null)
+                .add(JwtUtil.SESSION_ID_CLAIM, request.getHeader(SESSION_ID))
+                .add(JwtUtil.PERMISSIONS_CLAIM, request.getHeader(PERMISSIONS))
+                .add(JwtUtil.ISSUED_AT_MILLIS_CLAIM, issuedAt != null ? Long.valueOf(issuedAt) : null)
+                .build();
+    }
+
+    private String sign(HttpServletRequest request) {
+        StringBuilder canonical = new StringBuilder(256);
+        for (String name : SIGNED_HEADERS) {
+            String value = request.getHeader(name);
+            canonical.append(value != null ? value : "").append('\n');
+        }
+        byte[] mac = macHolder.get().doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
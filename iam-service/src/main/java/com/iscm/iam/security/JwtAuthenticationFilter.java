@@ -1,5 +1,7 @@
 package com.iscm.iam.security;
 
+import com.iscm.iam.service.ActivityWriteBehindBuffer;
+import com.iscm.iam.service.RolePermissionSnapshot;
 import com.iscm.iam.service.UserService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,14 +10,19 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -25,6 +32,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final RolePermissionSnapshot rolePermissionSnapshot;
+    private final GatewayIdentityVerifier gatewayIdentityVerifier;
+    private final JwtBlacklistService jwtBlacklistService;
+    private final ActivityWriteBehindBuffer activityBuffer;
+    private final ClientIpResolver clientIpResolver;
+
+    // Build the principal from signed token claims instead of loading the user per request
+    @Value("${app.security.stateless-auth.enabled:false}")
+    private boolean statelessAuthEnabled;
     
     private static final Pattern JWT_PATTERN = Pattern.compile("^[A-Za-z0-9-_=]+\\.[A-Za-z0-9-_=]+\\.?[A-Za-z0-9-_.+/=]*$");
 
@@ -35,35 +51,51 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         
         try {
-            String jwt = getJwtFromRequest(request);
+            // Identity already verified by the gateway skips JWT verification entirely
+            JwtUtil.JwtClaims claims = gatewayIdentityVerifier.verify(request);
+            String jwt = claims == null ? getJwtFromRequest(request) : null;
             
-            if (StringUtils.isNotEmpty(jwt)) {
-                // Validate JWT format before processing
-                if (!isValidJwtFormat(jwt)) {
-                    log.warn("Invalid JWT format from IP: {}", getClientIpAddress(request));
-                    filterChain.doFilter(request, response);
-                    return;
-                }
+            if (claims != null || StringUtils.isNotEmpty(jwt)) {
+                if (claims == null) {
+                    // Validate JWT format before processing
+                    if (!isValidJwtFormat(jwt)) {
+                        log.warn("Invalid JWT format from IP: {}", clientIpResolver.resolve(request));
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
 
-                // OPTIMIZED: Single-pass JWT parsing to extract all claims
-                JwtUtil.JwtClaims claims = jwtUtil.extractAllClaims(jwt);
+                    // OPTIMIZED: Single-pass JWT parsing to extract all claims
+                    claims = jwtUtil.extractAllClaims(jwt);
+                }
 
-                if (claims != null && claims.isValid()) {
+                if (claims != null && claims.isValid()
+                        && jwtBlacklistService.isRevoked(claims)) {
+                    log.warn("Revoked JWT token used from IP: {}", clientIpResolver.resolve(request));
+                } else if (claims != null && claims.isValid()) {
                     // Set user ID in request for rate limiting
                     request.setAttribute("userId", claims.getUserId());
+                    if (claims.getTenantId() != null) {
+                        request.setAttribute("tenantId", claims.getTenantId());
+                    }
 
-                    UserDetails userDetails = userService.loadUserByUserId(claims.getUserId());
+                    // Decided once: ensureVersion may wait on a snapshot reload
+                    boolean tokenAuthorities = useTokenAuthorities(claims);
+                    UserDetails userDetails = resolveUserDetails(claims, tokenAuthorities);
 
-                    UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    AbstractAuthenticationToken authentication = buildAuthentication(claims, userDetails, tokenAuthorities);
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
 
+                    // Buffered in memory and written in batches, not once per request
+                    if (claims.getSessionId() != null) {
+                        activityBuffer.recordSessionAccess(UUID.fromString(claims.getSessionId()), LocalDateTime.now());
+                    }
+
                     log.debug("Authenticated user: {} from IP: {}",
-                            userDetails.getUsername(), getClientIpAddress(request));
+                            userDetails.getUsername(), clientIpResolver.resolve(request));
                 } else {
-                    log.warn("Invalid JWT token from IP: {}", getClientIpAddress(request));
+                    log.warn("Invalid JWT token from IP: {}", clientIpResolver.resolve(request));
                 }
             }
         } catch (Exception ex) {
@@ -74,6 +106,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Token claims are trusted for authorities when the snapshot is at least as new as the token
+    private boolean useTokenAuthorities(JwtUtil.JwtClaims claims) {
+        Long permissionsVersion = claims.getPermissionsVersion();
+        return statelessAuthEnabled && permissionsVersion != null
+                && rolePermissionSnapshot.ensureVersion(permissionsVersion);
+    }
+
+    private UserDetails resolveUserDetails(JwtUtil.JwtClaims claims, boolean tokenAuthorities) {
+        if (tokenAuthorities) {
+            // Account status is re-checked when the access token is refreshed
+            return new User(claims.getEmail(), "", rolePermissionSnapshot.getAuthorities(claims.getRoles()));
+        }
+        return userService.loadUserByUserId(claims.getUserId());
+    }
+
+    // Bitset-backed once the snapshot has loaded, so permission checks are bit tests. The perms claim
+    // is for downstream services only: here the bits always come from the current snapshot, so a
+    // permission removed from a role stops working before the tokens carrying it expire.
+    private AbstractAuthenticationToken buildAuthentication(JwtUtil.JwtClaims claims, UserDetails userDetails,
+                                                            boolean tokenAuthorities) {
+        if (!rolePermissionSnapshot.isLoaded()) {
+            return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        }
+        PermissionSet permissions = tokenAuthorities
+                ? rolePermissionSnapshot.getPermissionSet(claims.getRoles())
+                : rolePermissionSnapshot.toPermissionSet(userDetails.getAuthorities());
+        return new PermissionBitsAuthentication(userDetails, permissions);
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.isNotEmpty(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -85,12 +146,4 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private boolean isValidJwtFormat(String token) {
         return JWT_PATTERN.matcher(token).matches() && token.length() > 50; // Basic format validation
     }
-
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
\ No newline at end of file
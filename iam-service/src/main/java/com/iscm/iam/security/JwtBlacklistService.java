@@ -1,63 +1,174 @@
 package com.iscm.iam.security;
 
+import com.iscm.iam.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * DISABLED STUB - JWT blacklist service has been disabled for simplification.
- * This service does not actually blacklist JWT tokens.
- * To re-enable JWT blacklisting, restore the original implementation and add Redis dependencies.
+ * In-process access token revocation list keyed by jti.
+ *
+ * A Bloom filter answers "definitely not revoked" for almost every request without allocating.
+ * Behind it, revoked jtis live in a ring of buckets grouped by token expiry; a bucket is dropped
+ * as soon as every token in it has expired, and the Bloom filter is rebuilt from what remains.
  */
 @Slf4j
-//@Service
+@Service
+@RequiredArgsConstructor
 public class JwtBlacklistService {
 
-    @Value("${app.jwt.blacklist.enabled:false}")
-    private boolean blacklistEnabled;
+    // Rough heap cost of one revoked jti: 36-char String plus its set node
+    private static final int ESTIMATED_BYTES_PER_ENTRY = 160;
+
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationWatermarkService watermarkService;
+    private final RevocationPropagator revocationPropagator;
 
-    @Value("${app.jwt.blacklist.cleanup-interval:3600}")
-    private int cleanupIntervalSeconds;
+    @Value("${app.jwt.blacklist.enabled:true}")
+    private boolean blacklistEnabled;
 
-    @Value("${app.jwt.blacklist.max-size:10000}")
+    @Value("${app.jwt.blacklist.max-size:100000}")
     private int maxBlacklistSize;
 
+    @Value("${app.jwt.blacklist.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${app.jwt.blacklist.bucket-seconds:60}")
+    private long bucketSeconds;
+
+    // Writes and Bloom rebuilds are rare and serialised; reads never lock
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile BloomFilter bloomFilter;
+    private AtomicReferenceArray<Bucket> buckets;
+
+    // Tokens expiring beyond the bucket ring horizon (only with unusually long lifetimes)
+    private final Map<String, Long> overflow = new ConcurrentHashMap<>();
+
+    private final LongAdder totalBlacklisted = new LongAdder();
+    private final LongAdder bloomPositives = new LongAdder();
+    private final LongAdder bloomFalsePositives = new LongAdder();
+
+    @PostConstruct
+    private void init() {
+        int ringSize = (int) (jwtUtil.getAccessTokenExpiration() / bucketSeconds) + 2;
+        this.buckets = new AtomicReferenceArray<>(ringSize);
+        this.bloomFilter = BloomFilter.create(maxBlacklistSize, falsePositiveRate);
+    }
+
     /**
-     * Blacklist a JWT token - DISABLED
-     * @param token JWT token to blacklist
+     * Revoke an access token until it expires.
+     * @param token JWT access token to blacklist
      * @param reason Reason for blacklisting
      */
     public void blacklistToken(String token, String reason) {
-        if (!blacklistEnabled) {
-            log.debug("JWT blacklist disabled - not blacklisting token");
+        if (!blacklistEnabled || token == null) {
+            return;
+        }
+        JwtUtil.JwtClaims claims = jwtUtil.extractAllClaims(token);
+        if (claims == null || claims.getJti() == null) {
+            log.debug("Not blacklisting invalid or expired token");
             return;
         }
+        blacklistJti(claims.getJti(), claims.getExpiresAt());
+        log.info("Blacklisted token jti={} for user {}: {}", claims.getJti(), claims.getUserId(), reason);
+    }
 
-        log.info("JWT blacklist disabled - not blacklisting token for reason: {}", reason);
-        // No action taken when JWT blacklist is disabled
+    public void blacklistJti(String jti, long expiresAt) {
+        if (addJti(jti, expiresAt)) {
+            revocationPropagator.publishJti(jti, expiresAt);
+        }
     }
 
     /**
-     * Blacklist all tokens for a user - DISABLED
+     * Applies a jti revoked on another node, without propagating it again
+     */
+    @EventListener
+    public void onRemoteRevocation(RevocationEvent event) {
+        if (event.type() == RevocationEvent.Type.JTI) {
+            addJti(event.subject(), event.value());
+        }
+    }
+
+    private boolean addJti(String jti, long expiresAt) {
+        long now = Instant.now().getEpochSecond();
+        if (!blacklistEnabled || expiresAt <= now) {
+            return false; // Expired tokens are rejected anyway
+        }
+        long epoch = bucketEpoch(expiresAt);
+
+        writeLock.lock();
+        try {
+            boolean added;
+            if (epoch - bucketEpoch(now) >= buckets.length()) {
+                added = overflow.put(jti, expiresAt) == null;
+            } else {
+                int slot = slot(epoch);
+                Bucket bucket = buckets.get(slot);
+                if (bucket == null || bucket.epoch != epoch) {
+                    bucket = new Bucket(epoch, ConcurrentHashMap.newKeySet());
+                    buckets.set(slot, bucket);
+                }
+                added = bucket.jtis.add(jti);
+            }
+            if (added) {
+                bloomFilter.put(jti);
+                totalBlacklisted.increment();
+            }
+            return added;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Blacklist all tokens issued to a user so far, via a revocation watermark
      * @param userId User ID whose tokens should be blacklisted
      * @param reason Reason for blacklisting
      */
     public void blacklistAllUserTokens(UUID userId, String reason) {
         if (!blacklistEnabled) {
-            log.debug("JWT blacklist disabled - not blacklisting tokens for user: {}", userId);
             return;
         }
+        watermarkService.revokeAllUserTokens(userId);
+        log.info("Blacklisted all tokens for user {}: {}", userId, reason);
+    }
 
-        log.info("JWT blacklist disabled - not blacklisting tokens for user: {}, reason: {}", userId, reason);
-        // No action taken when JWT blacklist is disabled
+    /**
+     * Blacklist all tokens issued to any user of a tenant so far
+     */
+    public void blacklistAllTenantTokens(UUID tenantId, String reason) {
+        if (!blacklistEnabled) {
+            return;
+        }
+        watermarkService.revokeAllTenantTokens(tenantId);
+        log.info("Blacklisted all tokens for tenant {}: {}", tenantId, reason);
     }
 
     /**
-     * Check if a token is blacklisted - DISABLED
+     * Full revocation check for verified claims: jti list plus user/tenant watermarks
+     */
+    public boolean isRevoked(JwtUtil.JwtClaims claims) {
+        return blacklistEnabled
+                && (isJtiRevoked(claims.getJti(), claims.getExpiresAt())
+                    || watermarkService.isRevoked(claims.getUserId(), claims.getTenantId(), claims.getIssuedAtMillis()));
+    }
+
+    /**
+     * Check if a token is blacklisted
      * @param token JWT token to check
      * @return true if token is blacklisted, false otherwise
      */
@@ -65,78 +176,151 @@ public class JwtBlacklistService {
         if (!blacklistEnabled || token == null || token.trim().isEmpty()) {
             return false;
         }
-
-        log.debug("JWT blacklist disabled - allowing token");
-        return false; // Always allow tokens when blacklist is disabled
+        JwtUtil.JwtClaims claims = jwtUtil.extractAllClaims(token);
+        return claims != null && isRevoked(claims);
     }
 
     /**
-     * Check if all tokens for a user are blacklisted - DISABLED
-     * @param userId User ID to check
-     * @return true if user's tokens are blacklisted, false otherwise
+     * Hot-path check used by the authentication filter. O(1) and allocation-free.
      */
-    public boolean areUserTokensBlacklisted(UUID userId) {
-        if (!blacklistEnabled) {
+    public boolean isJtiRevoked(String jti, long expiresAt) {
+        if (!blacklistEnabled || jti == null || !bloomFilter.mightContain(jti)) {
             return false;
         }
+        bloomPositives.increment();
+
+        long epoch = bucketEpoch(expiresAt);
+        Bucket bucket = buckets.get(slot(epoch));
+        boolean revoked = (bucket != null && bucket.epoch == epoch && bucket.jtis.contains(jti))
+                || (!overflow.isEmpty() && overflow.containsKey(jti));
+        if (!revoked) {
+            bloomFalsePositives.increment();
+        }
+        return revoked;
+    }
 
-        log.debug("JWT blacklist disabled - allowing user: {}", userId);
-        return false; // Always allow users when blacklist is disabled
+    /**
+     * Check if all tokens for a user are blacklisted
+     * @param userId User ID to check
+     * @return true if the user has a revocation watermark still covering live tokens
+     */
+    public boolean areUserTokensBlacklisted(UUID userId) {
+        return blacklistEnabled && watermarkService.getUserWatermark(userId) != 0;
     }
 
     /**
-     * Remove a token from blacklist (e.g., for testing) - DISABLED
+     * Remove a token from blacklist (e.g., for testing)
      * @param token JWT token to remove from blacklist
      */
     public void removeFromBlacklist(String token) {
-        if (!blacklistEnabled) {
-            log.debug("JWT blacklist disabled - not removing token");
+        JwtUtil.JwtClaims claims = jwtUtil.extractAllClaims(token);
+        if (claims == null || claims.getJti() == null) {
             return;
         }
-
-        log.info("JWT blacklist disabled - not removing token");
-        // No action taken when JWT blacklist is disabled
+        writeLock.lock();
+        try {
+            long epoch = bucketEpoch(claims.getExpiresAt());
+            Bucket bucket = buckets.get(slot(epoch));
+            if (bucket != null && bucket.epoch == epoch) {
+                bucket.jtis.remove(claims.getJti());
+            }
+            overflow.remove(claims.getJti());
+            // The Bloom bit stays set until the next rebuild, costing at most a false positive
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Remove user from blacklist - DISABLED
+     * Remove user from blacklist - watermarks only move forward and lapse on their own
      * @param userId User ID to remove from blacklist
      */
     public void removeFromUserBlacklist(UUID userId) {
-        if (!blacklistEnabled) {
-            log.debug("JWT blacklist disabled - not removing user: {}", userId);
-            return;
-        }
-
-        log.info("JWT blacklist disabled - not removing user: {}", userId);
-        // No action taken when JWT blacklist is disabled
+        log.debug("User revocation watermarks cannot be lifted, they lapse after the token lifetime: {}", userId);
     }
 
     /**
-     * Clean up expired blacklisted tokens - DISABLED
+     * Drop buckets whose tokens have all expired and rebuild the Bloom filter without them
      */
+    @Scheduled(fixedDelayString = "${app.jwt.blacklist.cleanup-interval-ms:60000}")
     public void cleanupExpiredTokens() {
         if (!blacklistEnabled) {
-            log.debug("JWT blacklist disabled - no cleanup needed");
             return;
         }
+        long now = Instant.now().getEpochSecond();
+        long currentEpoch = bucketEpoch(now);
+
+        writeLock.lock();
+        try {
+            boolean dropped = false;
+            for (int slot = 0; slot < buckets.length(); slot++) {
+                Bucket bucket = buckets.get(slot);
+                if (bucket != null && bucket.epoch < currentEpoch) {
+                    buckets.set(slot, null);
+                    dropped = true;
+                }
+            }
+            dropped |= overflow.values().removeIf(expiresAt -> expiresAt <= now);
 
-        log.info("JWT blacklist cleanup disabled - no action taken");
-        // No action taken when JWT blacklist is disabled
+            if (dropped) {
+                BloomFilter rebuilt = BloomFilter.create(maxBlacklistSize, falsePositiveRate);
+                for (int slot = 0; slot < buckets.length(); slot++) {
+                    Bucket bucket = buckets.get(slot);
+                    if (bucket != null) {
+                        bucket.jtis.forEach(rebuilt::put);
+                    }
+                }
+                overflow.keySet().forEach(rebuilt::put);
+                bloomFilter = rebuilt;
+                log.debug("Dropped expired blacklist buckets, {} tokens remain", rebuilt.getInsertions());
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Get blacklist statistics - DISABLED
+     * Get blacklist statistics
      */
     public BlacklistStatistics getBlacklistStatistics() {
+        int active = activeEntries();
+        BloomFilter bloom = bloomFilter;
+        long positives = bloomPositives.sum();
         return BlacklistStatistics.builder()
-                .activeBlacklistedTokens(0)
-                .totalBlacklistedTokens(0)
+                .activeBlacklistedTokens(active)
+                .totalBlacklistedTokens((int) totalBlacklisted.sum())
                 .blacklistEnabled(blacklistEnabled)
                 .maxBlacklistSize(maxBlacklistSize)
+                .bloomFilterBytes(bloom.getMemoryBytes())
+                .estimatedMemoryBytes(bloom.getMemoryBytes() + (long) active * ESTIMATED_BYTES_PER_ENTRY)
+                .expectedFalsePositiveRate(bloom.getExpectedFalsePositiveRate())
+                .observedFalsePositiveRate(positives == 0 ? 0.0 : (double) bloomFalsePositives.sum() / positives)
                 .build();
     }
 
+    private int activeEntries() {
+        int count = overflow.size();
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null) {
+                count += bucket.jtis.size();
+            }
+        }
+        return count;
+    }
+
+    // A bucket covers tokens expiring in ((epoch - 1) * width, epoch * width]
+    private long bucketEpoch(long expiresAt) {
+        return (expiresAt + bucketSeconds - 1) / bucketSeconds;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) buckets.length());
+    }
+
+    private record Bucket(long epoch, Set<String> jtis) {
+    }
+
     // DTO for blacklist statistics
     @lombok.Data
     @lombok.Builder
@@ -145,5 +329,9 @@ public class JwtBlacklistService {
         private int totalBlacklistedTokens;
         private boolean blacklistEnabled;
         private int maxBlacklistSize;
+        private long bloomFilterBytes;
+        private long estimatedMemoryBytes;
+        private double expectedFalsePositiveRate;
+        private double observedFalsePositiveRate;
     }
-}
\ No newline at end of file
+}
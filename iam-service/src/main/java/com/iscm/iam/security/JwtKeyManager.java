@@ -0,0 +1,249 @@
+package com.iscm.iam.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the asymmetric access token signing keys (RS256 or EdDSA) and the published JWK set.
+ * Rotated-out public keys stay published and accepted for an overlap period so tokens signed
+ * with them remain verifiable until they expire. In the default HS512 mode this bean is inert.
+ */
+@Slf4j
+@Component
+public class JwtKeyManager {
+
+    public static final String HS512 = "HS512";
+    public static final String RS256 = "RS256";
+    public static final String EDDSA = "EdDSA";
+
+    @Value("${app.jwt.signing.algorithm:HS512}")
+    private String algorithm;
+
+    // PKCS#8 / X.509 PEM locations; keys are generated on startup when not configured
+    @Value("${app.jwt.signing.private-key:}")
+    private String privateKeyLocation;
+
+    @Value("${app.jwt.signing.public-key:}")
+    private String publicKeyLocation;
+
+    // Public key of the previous signing key pair, still accepted during a manual rotation
+    @Value("${app.jwt.signing.previous-public-key:}")
+    private String previousPublicKeyLocation;
+
+    @Value("${app.jwt.signing.rotation.enabled:false}")
+    private boolean rotationEnabled;
+
+    @Value("${app.jwt.signing.rotation.overlap-seconds:1800}")
+    private long rotationOverlapSeconds;
+
+    @Value("${app.jwt.signing.jwks-max-age-seconds:300}")
+    private long jwksMaxAgeSeconds;
+
+    private final ResourceLoader resourceLoader;
+
+    private volatile SigningKeys keys;
+
+    public JwtKeyManager(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!isAsymmetric()) {
+            this.keys = new SigningKeys(null, List.of(), "{\"keys\":[]}");
+            return;
+        }
+        if (!RS256.equals(algorithm) && !EDDSA.equals(algorithm)) {
+            throw new IllegalStateException("Unsupported JWT signing algorithm: " + algorithm);
+        }
+
+        List<VerificationKey> previous = new ArrayList<>();
+        KeyPair keyPair;
+        if (StringUtils.isNotBlank(privateKeyLocation)) {
+            keyPair = new KeyPair(readPublicKey(publicKeyLocation), readPrivateKey(privateKeyLocation));
+            if (StringUtils.isNotBlank(previousPublicKeyLocation)) {
+                previous.add(toVerificationKey(readPublicKey(previousPublicKeyLocation), Instant.MAX));
+            }
+        } else {
+            log.warn("No JWT signing key configured, generating an ephemeral {} key pair. " +
+                    "Tokens will not verify on other instances or after a restart.", algorithm);
+            keyPair = generateKeyPair();
+        }
+        install(new ActiveKey(keyPair.getPrivate(), toVerificationKey(keyPair.getPublic(), Instant.MAX)), previous);
+    }
+
+    public boolean isAsymmetric() {
+        return !HS512.equals(algorithm);
+    }
+
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return RS256.equals(algorithm) ? Jwts.SIG.RS256 : Jwts.SIG.EdDSA;
+    }
+
+    public String getActiveKeyId() {
+        return keys.active.verification.kid;
+    }
+
+    public PrivateKey getActivePrivateKey() {
+        return keys.active.privateKey;
+    }
+
+    public String getJwksJson() {
+        return keys.jwksJson;
+    }
+
+    public long getJwksMaxAgeSeconds() {
+        return jwksMaxAgeSeconds;
+    }
+
+    /**
+     * Replaces the signing key with a freshly generated pair. The outgoing public key stays
+     * in the JWK set and is accepted for verification until the overlap period ends.
+     */
+    public synchronized void rotate() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        SigningKeys current = keys;
+        Instant retireAt = Instant.now().plusSeconds(rotationOverlapSeconds);
+        List<VerificationKey> previous = new ArrayList<>(current.previous);
+        previous.add(new VerificationKey(current.active.verification.kid,
+                current.active.verification.publicKey, current.active.verification.jwk, retireAt));
+
+        KeyPair keyPair = generateKeyPair();
+        install(new ActiveKey(keyPair.getPrivate(), toVerificationKey(keyPair.getPublic(), Instant.MAX)), previous);
+        log.info("Rotated JWT signing key, new kid {}", getActiveKeyId());
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.signing.rotation.interval-ms:86400000}",
+            initialDelayString = "${app.jwt.signing.rotation.interval-ms:86400000}")
+    public void scheduledRotation() {
+        // Only ephemeral keys can be rotated in-process; configured keys rotate via configuration
+        if (rotationEnabled && isAsymmetric() && StringUtils.isBlank(privateKeyLocation)) {
+            rotate();
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public synchronized void retireExpiredKeys() {
+        SigningKeys current = keys;
+        Instant now = Instant.now();
+        if (current.previous.stream().anyMatch(key -> key.retireAt.isBefore(now))) {
+            install(current.active, current.previous.stream()
+                    .filter(key -> !key.retireAt.isBefore(now))
+                    .toList());
+        }
+    }
+
+    /**
+     * Resolves the public key for a kid, including keys still within their overlap period.
+     */
+    public PublicKey findVerificationKey(String kid) {
+        SigningKeys current = keys;
+        if (current.active != null && kid.equals(current.active.verification.kid)) {
+            return current.active.verification.publicKey;
+        }
+        for (VerificationKey key : current.previous) {
+            if (kid.equals(key.kid)) {
+                return key.publicKey;
+            }
+        }
+        return null;
+    }
+
+    private void install(ActiveKey active, List<VerificationKey> previous) {
+        List<VerificationKey> published = new ArrayList<>();
+        published.add(active.verification);
+        published.addAll(previous);
+        String jwksJson = published.stream()
+                .map(key -> Jwks.json(key.jwk))
+                .collect(Collectors.joining(",", "{\"keys\":[", "]}"));
+        this.keys = new SigningKeys(active, List.copyOf(previous), jwksJson);
+    }
+
+    private VerificationKey toVerificationKey(PublicKey publicKey, Instant retireAt) {
+        PublicJwk<PublicKey> jwk = Jwks.builder()
+                .key(publicKey)
+                .algorithm(algorithm)
+                .publicKeyUse("sig")
+                .idFromThumbprint()
+                .build();
+        return new VerificationKey(jwk.getId(), publicKey, jwk, retireAt);
+    }
+
+    private KeyPair generateKeyPair() {
+        return RS256.equals(algorithm)
+                ? Jwts.SIG.RS256.keyPair().build()
+                : Jwks.CRV.Ed25519.keyPair().build();
+    }
+
+    private PrivateKey readPrivateKey(String location) {
+        try {
+            return keyFactory().generatePrivate(new PKCS8EncodedKeySpec(readPem(location)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid JWT signing private key: " + location, e);
+        }
+    }
+
+    private PublicKey readPublicKey(String location) {
+        if (StringUtils.isBlank(location)) {
+            throw new IllegalStateException("app.jwt.signing.public-key is required with a configured private key");
+        }
+        try {
+            return keyFactory().generatePublic(new X509EncodedKeySpec(readPem(location)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid JWT signing public key: " + location, e);
+        }
+    }
+
+    private KeyFactory keyFactory() throws GeneralSecurityException {
+        return KeyFactory.getInstance(RS256.equals(algorithm) ? "RSA" : "Ed25519");
+    }
+
+    private byte[] readPem(String location) {
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream in = resource.getInputStream()) {
+            String pem = new String(in.readAllBytes(), StandardCharsets.US_ASCII)
+                    .replaceAll("-----(BEGIN|END) [A-Z ]+-----", "")
+                    .replaceAll("\\s", "");
+            return Base64.getDecoder().decode(pem);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read JWT key from " + location, e);
+        }
+    }
+
+    private record VerificationKey(String kid, PublicKey publicKey, PublicJwk<?> jwk, Instant retireAt) {
+    }
+
+    private record ActiveKey(PrivateKey privateKey, VerificationKey verification) {
+    }
+
+    private record SigningKeys(ActiveKey active, List<VerificationKey> previous, String jwksJson) {
+    }
+}
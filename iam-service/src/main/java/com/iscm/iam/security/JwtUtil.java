@@ -1,23 +1,39 @@
 package com.iscm.iam.security;
 
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
@@ -37,15 +53,59 @@ public class JwtUtil {
     @Value("${app.jwt.expiration.refresh:604800}") // 7 days
     private Long refreshTokenExpiration;
 
+    @Value("${app.jwt.claims-cache.enabled:true}")
+    private boolean claimsCacheEnabled;
+
+    @Value("${app.jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    // Add the holder's permissions as an encoded bitmap ("perms") for downstream authorization
+    @Value("${app.jwt.permissions-claim.enabled:false}")
+    private boolean permissionsClaimEnabled;
+
+    // Accept kid-less HS512 access tokens while migrating to asymmetric signing
+    @Value("${app.jwt.signing.accept-legacy-hmac:true}")
+    private boolean acceptLegacyHmac;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private JwtKeyManager keyManager;
+
     // Cached signing keys for performance optimization
     private SecretKey cachedSigningKey;
     private SecretKey cachedRefreshSigningKey;
 
+    // Parsers are immutable and thread-safe, build them once per key
+    private JwtParser accessTokenParser;
+    private JwtParser refreshTokenParser;
+
+    // Verified access token claims keyed by token digest; entries never outlive the token's exp
+    private Cache<String, JwtClaims> claimsCache;
+
+    private final ThreadLocal<MessageDigest> digestHolder = ThreadLocal.withInitial(JwtUtil::createDigest);
+
     @PostConstruct
     private void init() {
         // Cache signing keys to avoid repeated key generation
         this.cachedSigningKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
         this.cachedRefreshSigningKey = Keys.hmacShaKeyFor(jwtRefreshSecret.getBytes(StandardCharsets.UTF_8));
+        this.accessTokenParser = isAsymmetricSigning()
+                ? Jwts.parser().keyLocator(new AccessTokenKeyLocator()).build()
+                : Jwts.parser().verifyWith(cachedSigningKey).build();
+        this.refreshTokenParser = Jwts.parser().verifyWith(cachedRefreshSigningKey).build();
+
+        if (claimsCacheEnabled) {
+            this.claimsCache = Caffeine.newBuilder()
+                    .maximumSize(claimsCacheMaxSize)
+                    .expireAfter(new TokenExpiry())
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, claimsCache, "jwt.claims");
+            }
+        }
     }
 
     public Long getAccessTokenExpiration() {
@@ -64,6 +124,18 @@ public class JwtUtil {
         return cachedRefreshSigningKey;
     }
 
+    // Role/permission snapshot version the token was issued under
+    public static final String PERMISSIONS_VERSION_CLAIM = "pv";
+
+    // Session the token was issued for, so requests can record session activity
+    public static final String SESSION_ID_CLAIM = "sid";
+
+    // Permission bitmap over the stable permission index, see PermissionSet#encode
+    public static final String PERMISSIONS_CLAIM = "perms";
+
+    // Issue time in epoch millis; iat has one-second granularity, too coarse for revocation watermarks
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iatms";
+
     @Data
     public static class JwtClaims {
         private final String userId;
@@ -71,6 +143,11 @@ public class JwtUtil {
         private final List<String> roles;
         private final String tenantId;
         private final String jti;
+        private final Long permissionsVersion;
+        private final String sessionId;
+        private final String permissions;
+        private final long issuedAtMillis; // epoch millis, from iat for tokens without the claim, 0 if absent
+        private final long expiresAt; // epoch seconds, 0 if absent
         private final Claims claims;
 
         public JwtClaims(Claims claims) {
@@ -80,6 +157,13 @@ public class JwtUtil {
             this.roles = claims.get("roles", List.class);
             this.tenantId = claims.get("tenantId", String.class);
             this.jti = claims.getId();
+            this.permissionsVersion = claims.get(PERMISSIONS_VERSION_CLAIM, Long.class);
+            this.sessionId = claims.get(SESSION_ID_CLAIM, String.class);
+            this.permissions = claims.get(PERMISSIONS_CLAIM, String.class);
+            Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Long.class);
+            this.issuedAtMillis = issuedAtMillis != null ? issuedAtMillis
+                    : claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L;
+            this.expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() / 1000 : 0L;
         }
 
         public boolean isValid() {
@@ -88,18 +172,40 @@ public class JwtUtil {
     }
 
     public String generateAccessToken(UUID userId, String email, List<String> roles, UUID tenantId) {
+        return generateAccessToken(userId, email, roles, tenantId, null);
+    }
+
+    public String generateAccessToken(UUID userId, String email, List<String> roles, UUID tenantId,
+                                      Long permissionsVersion) {
+        return generateAccessToken(userId, email, roles, tenantId, permissionsVersion, null);
+    }
+
+    public String generateAccessToken(UUID userId, String email, List<String> roles, UUID tenantId,
+                                      Long permissionsVersion, UUID sessionId) {
+        return generateAccessToken(userId, email, roles, tenantId, permissionsVersion, sessionId, null);
+    }
+
+    public String generateAccessToken(UUID userId, String email, List<String> roles, UUID tenantId,
+                                      Long permissionsVersion, UUID sessionId, PermissionSet permissions) {
         String jti = UUID.randomUUID().toString();
+        Instant now = Instant.now();
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
         .setId(jti) // Add JWT ID (jti) claim
         .setSubject(userId.toString())
         .claim("email", email)
         .claim("roles", roles)
         .claim("tenantId", tenantId != null ? tenantId.toString() : null)
-        .setIssuedAt(Date.from(Instant.now()))
-        .setExpiration(Date.from(Instant.now().plusSeconds(accessTokenExpiration)))
-        .signWith(getSigningKey())
-        .compact();
+        .claim(PERMISSIONS_VERSION_CLAIM, permissionsVersion)
+        .claim(SESSION_ID_CLAIM, sessionId != null ? sessionId.toString() : null)
+        // Without a snapshot version the bitmap would be empty rather than complete, so leave it out
+        .claim(PERMISSIONS_CLAIM, permissionsClaimEnabled && permissions != null && permissionsVersion != null
+                ? permissions.encode() : null)
+        .claim(ISSUED_AT_MILLIS_CLAIM, now.toEpochMilli())
+        .setIssuedAt(Date.from(now))
+        .setExpiration(Date.from(now.plusSeconds(accessTokenExpiration)));
+
+        return signAccessToken(builder).compact();
     }
 
     public String generateRefreshToken(UUID userId) {
@@ -108,6 +214,7 @@ public class JwtUtil {
         return Jwts.builder()
         .setId(jti) // Add JWT ID (jti) claim
         .setSubject(userId.toString())
+        .setIssuedAt(Date.from(Instant.now()))
         .setExpiration(Date.from(Instant.now().plusSeconds(refreshTokenExpiration)))
         .signWith(getRefreshSigningKey())
         .compact();
@@ -115,12 +222,24 @@ public class JwtUtil {
 
     // OPTIMIZED: Single-pass JWT parsing method
     public JwtClaims extractAllClaims(String token) {
+        if (claimsCache == null) {
+            return parseAccessToken(token);
+        }
+        String key = digest(token);
+        JwtClaims cached = claimsCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        JwtClaims claims = parseAccessToken(token);
+        if (claims != null && claims.getClaims().getExpiration() != null) {
+            claimsCache.put(key, claims);
+        }
+        return claims;
+    }
+
+    private JwtClaims parseAccessToken(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = accessTokenParser.parseSignedClaims(token).getPayload();
 
             return new JwtClaims(claims);
         } catch (ExpiredJwtException ex) {
@@ -156,7 +275,7 @@ public class JwtUtil {
 
     public boolean validateRefreshToken(String token) {
         try {
-            Jwts.parser().setSigningKey(getRefreshSigningKey()).build().parseClaimsJws(token);
+            refreshTokenParser.parseSignedClaims(token);
             return true;
         } catch (ExpiredJwtException ex) {
             log.error("JWT refresh token expired: {}", ex.getMessage());
@@ -169,35 +288,22 @@ public class JwtUtil {
     }
 
     public String getUserIdFromRefreshToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(getRefreshSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = refreshTokenParser.parseSignedClaims(token).getPayload();
         return claims.getSubject();
     }
 
     public String getJtiFromToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getId();
-        } catch (Exception e) {
-            log.error("Failed to extract JTI from token", e);
+        JwtClaims claims = extractAllClaims(token);
+        if (claims == null) {
+            log.error("Failed to extract JTI from token");
             return null;
         }
+        return claims.getJti();
     }
 
     public String getJtiFromRefreshToken(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(getRefreshSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = refreshTokenParser.parseSignedClaims(token).getPayload();
             return claims.getId();
         } catch (Exception e) {
             log.error("Failed to extract JTI from refresh token", e);
@@ -206,16 +312,72 @@ public class JwtUtil {
     }
 
     public Instant getExpirationFromToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getExpiration().toInstant();
-        } catch (Exception e) {
-            log.error("Failed to extract expiration from token", e);
+        JwtClaims claims = extractAllClaims(token);
+        if (claims == null) {
+            log.error("Failed to extract expiration from token");
             return Instant.now().plus(Duration.ofHours(1)); // Default expiration
         }
+        return claims.getClaims().getExpiration().toInstant();
+    }
+
+    private boolean isAsymmetricSigning() {
+        return keyManager != null && keyManager.isAsymmetric();
+    }
+
+    private JwtBuilder signAccessToken(JwtBuilder builder) {
+        if (!isAsymmetricSigning()) {
+            return builder.signWith(getSigningKey());
+        }
+        return builder
+                .header().keyId(keyManager.getActiveKeyId()).and()
+                .signWith(keyManager.getActivePrivateKey(), keyManager.getSignatureAlgorithm());
+    }
+
+    // Picks the published public key by kid; kid-less tokens predate asymmetric signing
+    private class AccessTokenKeyLocator extends LocatorAdapter<Key> {
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            String kid = header.getKeyId();
+            if (kid == null) {
+                return acceptLegacyHmac ? cachedSigningKey : null;
+            }
+            return keyManager.findVerificationKey(kid);
+        }
+    }
+
+    private String digest(String token) {
+        byte[] hash = digestHolder.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Expire each cached entry exactly when its token does
+    private static class TokenExpiry implements Expiry<String, JwtClaims> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtClaims value, long currentTime) {
+            long remainingMillis = value.getClaims().getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtClaims value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtClaims value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
     }
 }
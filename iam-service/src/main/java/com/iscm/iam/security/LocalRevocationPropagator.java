@@ -0,0 +1,22 @@
+package com.iscm.iam.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-node deployments: revocations stay in this process
+ */
+@Component
+@ConditionalOnProperty(name = "app.jwt.revocation.propagation", havingValue = "none", matchIfMissing = true)
+public class LocalRevocationPropagator implements RevocationPropagator {
+
+    @Override
+    public String getNodeId() {
+        return "local";
+    }
+
+    @Override
+    public void publish(RevocationEvent event) {
+        // Nothing to propagate
+    }
+}
@@ -0,0 +1,157 @@
+package com.iscm.iam.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Counts failed logins per account and per client IP in sliding windows held in memory, so a
+ * failed login writes nothing to the database. An account is locked once it reaches the attempt
+ * limit within the window; only that lock is persisted by the caller. An IP is refused while it
+ * has reached its own limit within the window.
+ */
+@Component
+public class LoginAttemptTracker {
+
+    @Value("${app.security.max-login-attempts:5}")
+    private int maxAccountAttempts;
+
+    @Value("${app.security.account-lock-duration-minutes:30}")
+    private long lockDurationMinutes;
+
+    @Value("${app.security.login-attempts.window-minutes:15}")
+    private long windowMinutes;
+
+    @Value("${app.security.login-attempts.max-ip-attempts:50}")
+    private int maxIpAttempts;
+
+    @Value("${app.security.login-attempts.max-tracked-keys:100000}")
+    private long maxTrackedKeys;
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    private Cache<String, FailureWindow> accountFailures;
+    private Cache<String, FailureWindow> ipFailures;
+
+    @PostConstruct
+    void init() {
+        Duration window = Duration.ofMinutes(windowMinutes);
+        // An entry must outlive both its window and any lock it carries
+        this.accountFailures = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterWrite(window.compareTo(Duration.ofMinutes(lockDurationMinutes)) > 0
+                        ? window : Duration.ofMinutes(lockDurationMinutes))
+                .build();
+        this.ipFailures = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * Returns when the in-memory lock on the account ends, or {@code null} if it is not locked.
+     */
+    public LocalDateTime accountLockedUntil(String email) {
+        FailureWindow failures = accountFailures.getIfPresent(accountKey(email));
+        if (failures == null) {
+            return null;
+        }
+        long lockedUntil = failures.lockedUntil();
+        return lockedUntil > clock.millis() ? toLocalDateTime(lockedUntil) : null;
+    }
+
+    public boolean isIpBlocked(String ipAddress) {
+        if (ipAddress == null) {
+            return false;
+        }
+        FailureWindow failures = ipFailures.getIfPresent(ipAddress);
+        return failures != null && failures.isFull(clock.millis(), windowMillis());
+    }
+
+    /**
+     * Records a failed login for the account and IP. Returns the lock end time if this failure
+     * locked the account, so the caller can persist it; {@code null} otherwise.
+     */
+    public LocalDateTime recordFailure(String email, String ipAddress) {
+        long now = clock.millis();
+        if (ipAddress != null) {
+            ipFailures.get(ipAddress, ip -> new FailureWindow(maxIpAttempts)).record(now, windowMillis(), 0);
+        }
+        long lockMillis = Duration.ofMinutes(lockDurationMinutes).toMillis();
+        FailureWindow failures = accountFailures.get(accountKey(email), key -> new FailureWindow(maxAccountAttempts));
+        long lockedUntil = failures.record(now, windowMillis(), lockMillis);
+        // Re-insert so the entry's expiry restarts with the latest failure
+        accountFailures.put(accountKey(email), failures);
+        return lockedUntil > 0 ? toLocalDateTime(lockedUntil) : null;
+    }
+
+    // Called on a successful login and when an admin unlocks the account
+    public void reset(String email) {
+        accountFailures.invalidate(accountKey(email));
+    }
+
+    public int getMaxAccountAttempts() {
+        return maxAccountAttempts;
+    }
+
+    private long windowMillis() {
+        return Duration.ofMinutes(windowMinutes).toMillis();
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), clock.getZone());
+    }
+
+    private static String accountKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Ring of the last {@code limit} failure times. The limit is reached within the window when
+     * the oldest of them is still inside it, so memory per key stays at {@code limit} longs.
+     */
+    static final class FailureWindow {
+
+        private final long[] failures;
+        private int next;
+        private int count;
+        private long lockedUntil;
+
+        FailureWindow(int limit) {
+            this.failures = new long[Math.max(1, limit)];
+        }
+
+        synchronized boolean isFull(long now, long windowMillis) {
+            return count == failures.length && failures[next] > now - windowMillis;
+        }
+
+        /**
+         * Adds a failure and, when it fills the window of an unlocked key, starts a lock of
+         * {@code lockMillis}. Returns the new lock end time, or 0 if no lock started.
+         */
+        synchronized long record(long now, long windowMillis, long lockMillis) {
+            failures[next] = now;
+            next = (next + 1) % failures.length;
+            count = Math.min(count + 1, failures.length);
+            if (lockMillis > 0 && lockedUntil <= now && isFull(now, windowMillis)) {
+                lockedUntil = now + lockMillis;
+                // Start counting afresh once the lock runs out
+                count = 0;
+                return lockedUntil;
+            }
+            return 0;
+        }
+
+        synchronized long lockedUntil() {
+            return lockedUntil;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.iscm.iam.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * Authenticated token whose authorities are a {@link PermissionSet}, so permission checks made
+ * through {@link PermissionChecker} are O(1) bit tests.
+ */
+public class PermissionBitsAuthentication extends AbstractAuthenticationToken {
+
+    private final Object principal;
+    private final PermissionSet permissions;
+
+    public PermissionBitsAuthentication(Object principal, PermissionSet permissions) {
+        // The authorities live in the permission set, not in the superclass list
+        super(null);
+        this.principal = principal;
+        this.permissions = permissions;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return permissions;
+    }
+
+    public PermissionSet getPermissions() {
+        return permissions;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return principal;
+    }
+}
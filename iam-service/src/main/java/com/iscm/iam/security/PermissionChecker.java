@@ -0,0 +1,36 @@
+package com.iscm.iam.security;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Permission checks for {@code @PreAuthorize("@permissions.has(authentication, 'USER_READ')")}
+ * and URL rules. Bitset-backed authentications answer with a bit test; any other authentication
+ * falls back to scanning its authorities.
+ */
+@Component("permissions")
+public class PermissionChecker {
+
+    public boolean has(Authentication authentication, String permission) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        if (authentication instanceof PermissionBitsAuthentication bitsAuthentication) {
+            return bitsAuthentication.getPermissions().hasAuthority(permission);
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (permission.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public AuthorizationManager<RequestAuthorizationContext> authority(String permission) {
+        return (authentication, context) -> new AuthorizationDecision(has(authentication.get(), permission));
+    }
+}
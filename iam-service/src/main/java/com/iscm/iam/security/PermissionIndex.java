@@ -0,0 +1,49 @@
+package com.iscm.iam.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Map;
+
+/**
+ * Immutable mapping between permission codes and their stable bit positions (permissions.bit_index).
+ * Positions are never reused, so a bitmap stays readable after permissions are added or removed;
+ * positions of removed permissions are simply empty.
+ */
+public final class PermissionIndex {
+
+    public static final PermissionIndex EMPTY = new PermissionIndex(Map.of());
+
+    private final Map<String, Integer> indexByCode;
+    private final GrantedAuthority[] authorityByIndex;
+
+    public PermissionIndex(Map<String, Integer> indexByCode) {
+        this.indexByCode = Map.copyOf(indexByCode);
+        int size = indexByCode.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        this.authorityByIndex = new GrantedAuthority[size];
+        indexByCode.forEach((code, index) -> authorityByIndex[index] = new SimpleGrantedAuthority(code));
+    }
+
+    /**
+     * @return the bit position of the code, or -1 if it is not a known permission
+     */
+    public int indexOf(String code) {
+        Integer index = indexByCode.get(code);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the shared authority for the bit position, or null if no permission holds it
+     */
+    public GrantedAuthority authority(int index) {
+        return index < authorityByIndex.length ? authorityByIndex[index] : null;
+    }
+
+    public int size() {
+        return authorityByIndex.length;
+    }
+
+    public Map<String, Integer> asMap() {
+        return indexByCode;
+    }
+}
@@ -0,0 +1,157 @@
+package com.iscm.iam.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable authority collection of a principal: its ROLE_ authorities plus its permissions held
+ * as a bitset over a {@link PermissionIndex}. Checking a permission is a map lookup and a bit test
+ * instead of a scan over authority strings. Iteration yields the shared authority instances.
+ */
+public final class PermissionSet extends AbstractCollection<GrantedAuthority> {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final List<GrantedAuthority> roleAuthorities;
+    private final long[] bits;
+    private final PermissionIndex index;
+    private final int permissionCount;
+
+    public PermissionSet(List<GrantedAuthority> roleAuthorities, long[] bits, PermissionIndex index) {
+        this.roleAuthorities = List.copyOf(roleAuthorities);
+        this.bits = bits;
+        this.index = index;
+        int count = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (index.authority(i) != null) {
+                count++;
+            }
+        }
+        this.permissionCount = count;
+    }
+
+    public boolean hasPermission(String code) {
+        int position = index.indexOf(code);
+        return position >= 0 && isSet(position);
+    }
+
+    public boolean hasRole(String roleName) {
+        String authority = roleName.startsWith(ROLE_PREFIX) ? roleName : ROLE_PREFIX + roleName;
+        for (GrantedAuthority roleAuthority : roleAuthorities) {
+            if (roleAuthority.getAuthority().equals(authority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks a ROLE_ authority against the roles and anything else against the permission bits.
+     */
+    public boolean hasAuthority(String authority) {
+        return authority.startsWith(ROLE_PREFIX) ? hasRole(authority) : hasPermission(authority);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof GrantedAuthority authority
+                && authority.getAuthority() != null
+                && hasAuthority(authority.getAuthority());
+    }
+
+    @Override
+    public int size() {
+        return roleAuthorities.size() + permissionCount;
+    }
+
+    @Override
+    public Iterator<GrantedAuthority> iterator() {
+        return new Iterator<>() {
+            private int roleCursor = 0;
+            private int bitCursor = advance(0);
+
+            @Override
+            public boolean hasNext() {
+                return roleCursor < roleAuthorities.size() || bitCursor >= 0;
+            }
+
+            @Override
+            public GrantedAuthority next() {
+                if (roleCursor < roleAuthorities.size()) {
+                    return roleAuthorities.get(roleCursor++);
+                }
+                if (bitCursor < 0) {
+                    throw new NoSuchElementException();
+                }
+                GrantedAuthority authority = index.authority(bitCursor);
+                bitCursor = advance(bitCursor + 1);
+                return authority;
+            }
+
+            // Skips positions of permissions that no longer exist
+            private int advance(int from) {
+                int i = nextSetBit(from);
+                while (i >= 0 && index.authority(i) == null) {
+                    i = nextSetBit(i + 1);
+                }
+                return i;
+            }
+        };
+    }
+
+    /**
+     * Little-endian bitmap, base64url without padding and trailing zero bytes: a few bytes for
+     * dozens of permissions, readable by any service that knows the permission index.
+     */
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+        byte[] bytes = buffer.array();
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(bytes, length));
+    }
+
+    public static long[] decode(String encoded) {
+        byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+        long[] words = new long[(bytes.length + Long.BYTES - 1) / Long.BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            words[i / Long.BYTES] |= (bytes[i] & 0xFFL) << (8 * (i % Long.BYTES));
+        }
+        return words;
+    }
+
+    private boolean isSet(int position) {
+        int word = position >>> 6;
+        return word < bits.length && (bits[word] & (1L << position)) != 0;
+    }
+
+    private int nextSetBit(int from) {
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return -1;
+        }
+        long remaining = bits[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == bits.length) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+    }
+}
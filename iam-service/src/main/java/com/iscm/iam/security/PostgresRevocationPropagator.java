@@ -0,0 +1,220 @@
+package com.iscm.iam.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Propagates revocations through Postgres. Publishing inserts into {@code revocation_events},
+ * whose trigger issues a NOTIFY that is delivered when the insert commits. Each node LISTENs on a dedicated
+ * connection (outside the Hikari pool, which would flag it as leaked) and, after every
+ * (re)connect, replays the events it may have missed from the table.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.jwt.revocation.propagation", havingValue = "postgres")
+public class PostgresRevocationPropagator extends AbstractRevocationPropagator {
+
+    static final String CHANNEL = "iam_revocation";
+
+    // Concurrent transactions may commit out of publish order; replay a little before the last event seen
+    private static final long CATCH_UP_OVERLAP_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate insertTransaction;
+    private final JwtUtil jwtUtil;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Value("${app.jwt.revocation.catch-up-max-events:10000}")
+    private int catchUpMaxEvents;
+
+    @Value("${app.jwt.revocation.postgres.poll-timeout-ms:10000}")
+    private int pollTimeoutMs;
+
+    @Value("${app.jwt.revocation.reconnect-backoff-max-ms:30000}")
+    private long maxBackoffMs;
+
+    private volatile boolean running;
+    private volatile long lastPublishedAt;
+    private Thread listenerThread;
+
+    public PostgresRevocationPropagator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                        JwtUtil jwtUtil, ApplicationEventPublisher eventPublisher,
+                                        MeterRegistry meterRegistry) {
+        super("postgres", eventPublisher, meterRegistry);
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jwtUtil = jwtUtil;
+    }
+
+    /**
+     * Inside a transaction the event is inserted after commit, so a rolled-back revocation is never
+     * propagated and a failed insert cannot abort the caller's transaction
+     */
+    @Override
+    public void publish(RevocationEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    insert(event);
+                }
+            });
+        } else {
+            insert(event);
+        }
+    }
+
+    // The committed transaction's connection is still bound during afterCommit, so the insert needs its own
+    private void insert(RevocationEvent event) {
+        try {
+            insertTransaction.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT INTO revocation_events (event_type, subject, value, published_at, origin) VALUES (?, ?, ?, ?, ?)",
+                    event.type().name(), event.subject(), event.value(), event.publishedAt(), event.origin()));
+            recordPublished();
+        } catch (DataAccessException | TransactionException e) {
+            recordPublishFailure(event, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "revocation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    /**
+     * Events older than the access token lifetime cannot affect any live token
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.cleanup-interval-ms:600000}")
+    public void purgeExpiredEvents() {
+        try {
+            int deleted = jdbcTemplate.update("DELETE FROM revocation_events WHERE published_at < ?",
+                    catchUpHorizonMillis(jwtUtil.getAccessTokenExpiration()));
+            if (deleted > 0) {
+                log.debug("Purged {} expired revocation events", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge revocation events: {}", e.getMessage());
+        }
+    }
+
+    private void listen() {
+        long backoffMs = 500;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Subscribed first, so nothing committed from here on can fall between replay and live events
+                catchUp();
+                backoffMs = 500;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications == null || notifications.length == 0) {
+                        if (!connection.isValid(5)) {
+                            throw new SQLException("Listener connection lost");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        RevocationEvent event = decode(notification.getParameter());
+                        if (event != null) {
+                            lastPublishedAt = Math.max(lastPublishedAt, event.publishedAt());
+                            deliver(event, false);
+                        }
+                    }
+                }
+            } catch (SQLException | DataAccessException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Revocation listener disconnected, retrying in {} ms: {}", backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * Replays missed events, bounded by the access token lifetime and by catch-up-max-events
+     * (newest first, so a long outage keeps the most recent revocations)
+     */
+    void catchUp() {
+        long since = Math.max(lastPublishedAt - CATCH_UP_OVERLAP_MS,
+                catchUpHorizonMillis(jwtUtil.getAccessTokenExpiration()));
+        List<RevocationEvent> events = jdbcTemplate.query("""
+                SELECT event_type, subject, value, published_at, origin FROM revocation_events
+                WHERE published_at >= ? ORDER BY id DESC LIMIT ?
+                """,
+                (rs, rowNum) -> new RevocationEvent(RevocationEvent.Type.valueOf(rs.getString(1)),
+                        rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getString(5)),
+                since, catchUpMaxEvents);
+        for (RevocationEvent event : events) {
+            lastPublishedAt = Math.max(lastPublishedAt, event.publishedAt());
+            deliver(event, true);
+        }
+        if (events.size() >= catchUpMaxEvents) {
+            log.warn("Revocation catch-up truncated to the newest {} events", catchUpMaxEvents);
+        } else if (!events.isEmpty()) {
+            log.info("Caught up on {} revocation events", events.size());
+        }
+    }
+
+    private RevocationEvent decode(String payload) {
+        try {
+            return RevocationEvent.decode(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed revocation notification: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -4,41 +4,52 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.iscm.iam.config.RateLimitProperties;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.Ordered;
-import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
 
+/**
+ * Refuses requests over their rate limit tier with 429. Runs in the security filter chain right
+ * after JWT authentication (see SecurityConfig), so MFA calls are counted per authenticated user;
+ * everything else is counted per client IP. A failing check lets the request through rather than
+ * failing it.
+ */
 @Slf4j
-//@Component
-//@Order(Ordered.HIGHEST_PRECEDENCE + 1) // Execute after input validation
+@Component
+@RequiredArgsConstructor
 public class RateLimitingFilter extends OncePerRequestFilter {
 
-    // @Autowired - disabled since rate limiting is disabled
-    private RateLimitingService rateLimitingService = null;
-
-    // Cache for request patterns to improve performance
-    private final Map<String, RequestPattern> patternCache = new ConcurrentHashMap<>();
+    private final RateLimitingService rateLimitingService;
+    private final RateLimitProperties rateLimitProperties;
+    private final RequestClassifier requestClassifier;
+    private final ClientIpResolver clientIpResolver;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
-        try {
-            // Rate limiting is disabled - just continue
+        boolean rejected = false;
+        // Decoded and without the context path or ;-parameters, i.e. what the handler mapping matches,
+        // so an encoded path such as /auth/%6Cogin cannot escape its tier
+        String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        if (rateLimitingService.isEnabled() && shouldApplyRateLimiting(path, request.getMethod())) {
+            try {
+                rejected = applyRateLimiting(request, path, clientIpResolver.resolve(request), response);
+            } catch (RuntimeException e) {
+                log.error("Rate limiting filter error", e);
+            }
+        }
+        if (!rejected) {
             filterChain.doFilter(request, response);
-
-        } catch (Exception e) {
-            log.error("Rate limiting filter error", e);
-            filterChain.doFilter(request, response); // Continue on error
         }
     }
 
@@ -59,44 +70,38 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         return true;
     }
 
-    private boolean applyRateLimiting(HttpServletRequest request, String clientIp, HttpServletResponse response)
-            throws IOException {
+    private boolean applyRateLimiting(HttpServletRequest request, String path, String clientIp,
+                                      HttpServletResponse response) throws IOException {
 
-        String path = request.getRequestURI();
         String method = request.getMethod();
 
-        // Get request pattern
-        RequestPattern pattern = getRequestPattern(path, method);
+        // Classify by the route template the path hits
+        RequestPattern pattern = requestClassifier.classify(path, method);
 
         // Check global rate limiting
         if (rateLimitingService.isGloballyRateLimited(clientIp)) {
             log.warn("Global rate limit exceeded for IP: {}", clientIp);
             sendRateLimitResponse(response, "Too many requests. Please try again later.",
-                                rateLimitingService.getRateLimitStatus(clientIp, 1000, Duration.ofMinutes(1)));
+                                rateLimitingService.getRateLimitStatus(rateLimitProperties.getGlobal(), "global:" + clientIp));
             return true;
         }
 
         // Apply specific rate limiting based on request pattern
-        boolean isRateLimited = switch (pattern.getType()) {
-            case AUTH_LOGIN -> rateLimitingService.isLoginRateLimited(clientIp);
-            case AUTH_REGISTER -> rateLimitingService.isRegistrationRateLimited(clientIp);
-            case AUTH_PASSWORD_RESET -> rateLimitingService.isPasswordResetRateLimited(extractEmailFromRequest(request));
-            case AUTH_MFA -> rateLimitingService.isMfaRateLimited(extractUserIdFromRequest(request));
-            case API_SENSITIVE -> isRateLimited(clientIp, pattern);
-            case API_GENERAL -> isRateLimited(clientIp, pattern);
-            default -> false;
-        };
+        // Reset requests carry the email in the body, which is not read here, so they count per IP
+        String subject = pattern.getType() == RequestPattern.RequestType.AUTH_MFA
+                ? authenticatedSubject(clientIp)
+                : clientIp;
+        String key = pattern.getKeyPrefix() + subject;
 
-        if (isRateLimited) {
+        if (rateLimitingService.isRateLimited(pattern.getTier(), key)) {
             log.warn("Rate limit exceeded for IP: {}, path: {}, method: {}", clientIp, path, method);
 
             // Record failed attempt
             rateLimitingService.recordFailedAttempt(clientIp, pattern.getType().toString().toLowerCase());
 
             // Send rate limit response
-            RateLimitingService.RateLimitStatus status = rateLimitingService.getRateLimitStatus(
-                clientIp, pattern.getLimit(), Duration.ofSeconds(pattern.getWindowSeconds()));
-            sendRateLimitResponse(response, "Rate limit exceeded. Please try again later.", status);
+            sendRateLimitResponse(response, "Rate limit exceeded. Please try again later.",
+                                rateLimitingService.getRateLimitStatus(pattern.getTier(), key));
             return true;
         }
 
@@ -105,97 +110,14 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         return false;
     }
 
-    private boolean isRateLimited(String clientIp, RequestPattern pattern) {
-        return rateLimitingService.isRateLimitedSlidingWindow(
-            clientIp, pattern.getLimit(), Duration.ofSeconds(pattern.getWindowSeconds())
-        );
-    }
-
-    private RequestPattern getRequestPattern(String path, String method) {
-        String key = path + ":" + method;
-
-        return patternCache.computeIfAbsent(key, k -> {
-            if (path.startsWith("/iam/api/v1/auth/login")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.AUTH_LOGIN)
-                    .limit(5) // 5 login attempts per minute
-                    .windowSeconds(60)
-                    .build();
-            } else if (path.startsWith("/iam/api/v1/auth/register")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.AUTH_REGISTER)
-                    .limit(3) // 3 registration attempts per hour
-                    .windowSeconds(3600)
-                    .build();
-            } else if (path.startsWith("/iam/api/v1/auth/password/reset")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.AUTH_PASSWORD_RESET)
-                    .limit(3) // 3 password reset attempts per hour
-                    .windowSeconds(3600)
-                    .build();
-            } else if (path.contains("/mfa/")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.AUTH_MFA)
-                    .limit(10) // 10 MFA attempts per 5 minutes
-                    .windowSeconds(300)
-                    .build();
-            } else if (path.startsWith("/iam/api/v1/users/") && method.equals("POST")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.API_SENSITIVE)
-                    .limit(10) // 10 user creation attempts per minute
-                    .windowSeconds(60)
-                    .build();
-            } else if (path.startsWith("/iam/api/v1/admin/")) {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.API_SENSITIVE)
-                    .limit(100) // 100 admin requests per minute
-                    .windowSeconds(60)
-                    .build();
-            } else {
-                return RequestPattern.builder()
-                    .type(RequestPattern.RequestType.API_GENERAL)
-                    .limit(1000) // 1000 general requests per minute
-                    .windowSeconds(60)
-                    .build();
-            }
-        });
-    }
-
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty() && !"unknown".equalsIgnoreCase(xForwardedFor)) {
-            // X-Forwarded-For can contain multiple IPs, take the first one (original client)
-            return xForwardedFor.split(",")[0].trim();
-        }
-
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty() && !"unknown".equalsIgnoreCase(xRealIp)) {
-            return xRealIp.trim();
+    // The authenticated user, or the client IP for MFA steps taken before authentication
+    private String authenticatedSubject(String clientIp) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return "ip:" + clientIp;
         }
-
-        return request.getRemoteAddr();
-    }
-
-    private String extractEmailFromRequest(HttpServletRequest request) {
-        // Extract email from request body or parameters
-        // This is a simplified implementation - in practice, you might want to parse the request body
-        String email = request.getParameter("email");
-        return email != null ? email : "unknown";
-    }
-
-    private String extractUserIdFromRequest(HttpServletRequest request) {
-        // Extract user ID from request or JWT token
-        // This is a simplified implementation
-        String userId = request.getParameter("userId");
-        if (userId == null) {
-            // Try to extract from Authorization header (JWT token)
-            String authHeader = request.getHeader("Authorization");
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                // In practice, you would parse the JWT token here
-                userId = "from-jwt";
-            }
-        }
-        return userId != null ? userId : "unknown";
+        return "user:" + authentication.getName();
     }
 
     private void sendRateLimitResponse(HttpServletResponse response, String message, RateLimitingService.RateLimitStatus status)
@@ -221,26 +143,8 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         response.getWriter().write(jsonResponse);
     }
 
-    private void sendRateLimitResponse(HttpServletResponse response, String message)
-            throws IOException {
-
-        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-        response.setContentType("application/json");
-
-        String jsonResponse = String.format("""
-            {
-                "error": "RATE_LIMIT_EXCEEDED",
-                "message": "%s"
-            }
-            """, message);
-
-        response.getWriter().write(jsonResponse);
-    }
-
-    // DTO for request patterns
-    @lombok.Data
-    @lombok.Builder
-    @lombok.AllArgsConstructor
+    // Rate limit policy of a request type, shared by every route of that type
+    @lombok.Value
     public static class RequestPattern {
         public enum RequestType {
             AUTH_LOGIN,
@@ -251,8 +155,9 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             API_GENERAL
         }
 
-        private RequestType type;
-        private int limit;
-        private int windowSeconds;
+        RequestType type;
+        RateLimitProperties.RateLimitConfig tier;
+        // Keys of this type are counted separately from other types for the same client
+        String keyPrefix;
     }
-}
\ No newline at end of file
+}
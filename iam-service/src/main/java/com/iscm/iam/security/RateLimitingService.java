@@ -1,138 +1,209 @@
 package com.iscm.iam.security;
 
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.config.RateLimitProperties.RateLimitConfig;
+import com.iscm.iam.service.BasicRateLimitingService;
+import com.iscm.iam.service.DistributedRateLimitingService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.util.UUID;
+import java.util.List;
 
 /**
- * DISABLED STUB - Rate limiting service has been disabled for simplification.
- * This is a stub implementation that does not perform any rate limiting.
- * To re-enable rate limiting, restore the original implementation and add Redis dependencies.
+ * Applies the configured rate limit tiers to logins, registrations, password resets, MFA and
+ * API calls. Tiers are counted in sliding windows shared by all nodes through
+ * {@link DistributedRateLimitingService}, which falls back to the in-memory token buckets of
+ * {@link BasicRateLimitingService} without Redis. A key refused {@code burstLimit} times within a
+ * tier's recovery time is refused outright on that node until it recovers, so a client hammering
+ * a limit does not get a fresh allowance every refill.
  */
 @Slf4j
-//@Service
+@Service
+@RequiredArgsConstructor
 public class RateLimitingService {
 
+    private static final String LOGIN = "login:";
+    private static final String REGISTRATION = "register:";
+    private static final String PASSWORD_RESET = "reset:";
+    private static final String MFA = "mfa:";
+    private static final String API = "api:";
+    private static final String ADMIN = "admin:";
+    private static final String GLOBAL = "global:";
+    private static final List<String> KEY_PREFIXES =
+            List.of(LOGIN, REGISTRATION, PASSWORD_RESET, MFA, API, ADMIN, GLOBAL);
+
+    private final BasicRateLimitingService buckets;
+    private final DistributedRateLimitingService slidingWindow;
+    private final RateLimitProperties properties;
+
     @Value("${app.security.rate-limiting.enabled:false}")
     private boolean rateLimitingEnabled;
 
-    @Value("${app.security.rate-limiting.max-attempts:5}")
-    private int maxAttempts;
-
-    @Value("${app.security.rate-limiting.window-seconds:60}")
-    private int windowSeconds;
+    public boolean isEnabled() {
+        return rateLimitingEnabled;
+    }
 
     /**
      * Check if a specific key is rate limited
      * @param key Unique identifier (IP address, user ID, etc.)
      * @param limit Maximum allowed requests
-     * @param window Time window in seconds
+     * @param window Time over which the limit applies
      * @return true if rate limited (should block), false if allowed
      */
     public boolean isRateLimited(String key, int limit, Duration window) {
-        log.debug("Rate limiting disabled - allowing request for key: {}", key);
-        return false; // Always allow requests when rate limiting is disabled
+        return rateLimitingEnabled && buckets.isRateLimited(key, limit, window);
     }
 
     /**
-     * Check if a specific key is rate limited with sliding window
+     * Check if a specific key is rate limited over a sliding window, counted across all nodes
+     * when Redis is enabled and per node otherwise
      * @param key Unique identifier
      * @param limit Maximum allowed requests
-     * @param window Time window in seconds
+     * @param window Time over which the limit applies
      * @return true if rate limited (should block), false if allowed
      */
     public boolean isRateLimitedSlidingWindow(String key, int limit, Duration window) {
-        log.debug("Sliding window rate limiting disabled - allowing request for key: {}", key);
-        return false;
+        return rateLimitingEnabled && slidingWindow.isRateLimited(key, limit, window);
+    }
+
+    /**
+     * Check a key against a tier, counting a refusal towards the tier's burst limit
+     */
+    public boolean isRateLimited(RateLimitConfig tier, String key) {
+        if (!rateLimitingEnabled) {
+            return false;
+        }
+        if (buckets.isBurstLimited(key, tier.getBurstLimit(), tier.getBurstRecovery())) {
+            return true;
+        }
+        if (!slidingWindow.isRateLimited(key, tier.getRequests(), tier.getDuration())) {
+            return false;
+        }
+        buckets.recordBurst(key, tier.getBurstRecovery());
+        return true;
     }
 
     /**
      * Check if IP address is rate limited for login attempts
      */
     public boolean isLoginRateLimited(String ipAddress) {
-        log.debug("Login rate limiting disabled - allowing IP: {}", ipAddress);
-        return false;
+        return isRateLimited(properties.getAuth(), LOGIN + ipAddress);
     }
 
     /**
      * Check if IP address is rate limited for registration attempts
      */
     public boolean isRegistrationRateLimited(String ipAddress) {
-        log.debug("Registration rate limiting disabled - allowing IP: {}", ipAddress);
-        return false;
+        return isRateLimited(properties.getAuth(), REGISTRATION + ipAddress);
     }
 
     /**
      * Check if user is rate limited for password reset attempts
      */
     public boolean isPasswordResetRateLimited(String email) {
-        log.debug("Password reset rate limiting disabled - allowing email: {}", email);
-        return false;
+        return isRateLimited(properties.getAuth(), PASSWORD_RESET + email);
     }
 
     /**
      * Check if user is rate limited for MFA attempts
      */
     public boolean isMfaRateLimited(String userId) {
-        log.debug("MFA rate limiting disabled - allowing user: {}", userId);
-        return false;
+        return isRateLimited(properties.getAuth(), MFA + userId);
+    }
+
+    /**
+     * Check if IP address is rate limited for general API calls
+     */
+    public boolean isApiRateLimited(String ipAddress) {
+        return isRateLimited(properties.getApi(), API + ipAddress);
+    }
+
+    /**
+     * Check if IP address is rate limited for admin and other sensitive API calls
+     */
+    public boolean isAdminRateLimited(String ipAddress) {
+        return isRateLimited(properties.getAdmin(), ADMIN + ipAddress);
     }
 
     /**
      * Check if IP address is rate limited globally
      */
     public boolean isGloballyRateLimited(String ipAddress) {
-        log.debug("Global rate limiting disabled - allowing IP: {}", ipAddress);
-        return false;
+        return isRateLimited(properties.getGlobal(), GLOBAL + ipAddress);
     }
 
     /**
      * Record a successful request (for monitoring)
      */
     public void recordRequest(String key) {
-        log.debug("Request recording disabled for key: {}", key);
-        // No action taken when rate limiting is disabled
+        log.trace("Request allowed for key: {}", key);
     }
 
     /**
      * Record a failed attempt
      */
     public void recordFailedAttempt(String key, String type) {
-        log.debug("Failed attempt recording disabled for key: {}, type: {}", key, type);
-        // No action taken when rate limiting is disabled
+        log.debug("Rate limited request for key: {}, type: {}", key, type);
     }
 
     /**
      * Get rate limit status for a key
      */
     public RateLimitStatus getRateLimitStatus(String key, int limit, Duration window) {
+        long remaining = buckets.getRemainingRequests(key, limit, window);
         return RateLimitStatus.builder()
                 .key(key)
-                .currentCount(0)
+                .currentCount((int) (limit - remaining))
                 .limit(limit)
-                .remaining(limit)
+                .remaining((int) remaining)
                 .windowSeconds((int) window.getSeconds())
-                .resetTimeSeconds(0)
-                .isRateLimited(false)
+                .resetTimeSeconds((int) buckets.getTimeUntilReset(key, window).toSeconds())
+                .isRateLimited(remaining == 0)
+                .build();
+    }
+
+    /**
+     * Get the status of a key in a tier
+     */
+    public RateLimitStatus getRateLimitStatus(RateLimitConfig tier, String key) {
+        int limit = tier.getRequests();
+        long remaining = slidingWindow.getRemainingRequests(key, limit, tier.getDuration());
+        // Rounded up, so a client told to wait does not retry while still refused
+        long resetSeconds = (slidingWindow.getTimeUntilReset(key, limit, tier.getDuration()).toMillis() + 999) / 1000;
+        RateLimitStatus status = RateLimitStatus.builder()
+                .key(key)
+                .currentCount((int) (limit - remaining))
+                .limit(limit)
+                .remaining((int) remaining)
+                .windowSeconds((int) tier.getDuration().getSeconds())
+                .resetTimeSeconds((int) resetSeconds)
+                .isRateLimited(remaining == 0)
                 .build();
+        if (buckets.isBurstLimited(key, tier.getBurstLimit(), tier.getBurstRecovery())) {
+            status.setRateLimited(true);
+            status.setResetTimeSeconds((int) Math.max(status.getResetTimeSeconds(),
+                    tier.getBurstRecovery().toSeconds() / tier.getBurstLimit()));
+        }
+        return status;
     }
 
     /**
-     * Clear rate limit for a key (admin function)
+     * Clear rate limit for a key (admin function), e.g. an IP address across every tier
      */
     public void clearRateLimit(String key) {
-        log.info("Rate limit clear disabled for key: {}", key);
-        // No action taken when rate limiting is disabled
+        slidingWindow.reset(key);
+        KEY_PREFIXES.forEach(prefix -> slidingWindow.reset(prefix + key));
+        log.info("Cleared rate limits for key: {}", key);
     }
 
     /**
      * Get failed attempt count for a key and type
      */
     public int getFailedAttemptCount(String key, String type) {
-        return 0; // Always return 0 when rate limiting is disabled
+        return 0; // Refusals are not counted per type
     }
 
     // DTO for rate limit status
@@ -147,4 +218,4 @@ public class RateLimitingService {
         private int resetTimeSeconds;
         private boolean isRateLimited;
     }
-}
\ No newline at end of file
+}
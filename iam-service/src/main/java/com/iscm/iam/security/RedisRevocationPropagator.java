@@ -0,0 +1,188 @@
+package com.iscm.iam.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Propagates revocations through Redis. Every event is appended to a capped stream and then
+ * published on a pub/sub channel carrying its stream id. Pub/sub gives low-latency delivery but
+ * drops messages while a node is disconnected, so each node periodically replays the stream from
+ * the last id it saw; replays are bounded by the access token lifetime and catch-up-max-events.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.jwt.revocation.propagation", havingValue = "redis")
+public class RedisRevocationPropagator extends AbstractRevocationPropagator {
+
+    private static final String FIELD = "e";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final JwtUtil jwtUtil;
+
+    @Value("${app.jwt.revocation.redis.channel:iam:revocation}")
+    private String channel;
+
+    @Value("${app.jwt.revocation.redis.stream:iam:revocation:events}")
+    private String stream;
+
+    @Value("${app.jwt.revocation.redis.stream-max-length:100000}")
+    private long streamMaxLength;
+
+    @Value("${app.jwt.revocation.catch-up-max-events:10000}")
+    private int catchUpMaxEvents;
+
+    @Value("${app.jwt.revocation.reconnect-backoff-max-ms:30000}")
+    private long maxBackoffMs;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    // Stream id up to which the stream has been replayed; null until the first catch-up. Live
+    // messages do not move it, since one arriving after a disconnect says nothing about the gap.
+    private volatile String lastSeenId;
+
+    // Ids already delivered live, so the next replay does not apply them twice
+    private final Set<String> receivedLive = ConcurrentHashMap.newKeySet();
+
+    public RedisRevocationPropagator(StringRedisTemplate redisTemplate, RedisConnectionFactory connectionFactory,
+                                     JwtUtil jwtUtil, ApplicationEventPublisher eventPublisher,
+                                     MeterRegistry meterRegistry) {
+        super("redis", eventPublisher, meterRegistry);
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.jwtUtil = jwtUtil;
+    }
+
+    /**
+     * Inside a transaction the event is sent after commit, so a rolled-back revocation is never propagated
+     */
+    @Override
+    public void publish(RevocationEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        ExponentialBackOff recoveryBackOff = new ExponentialBackOff(500, 2.0);
+        recoveryBackOff.setMaxInterval(maxBackoffMs);
+        listenerContainer.setRecoveryBackoff(recoveryBackOff);
+        listenerContainer.addMessageListener((message, pattern) ->
+                onMessage(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(channel));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        // Subscribed first, so nothing published from here on can fall between replay and live events
+        catchUp();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * Heals gaps left by pub/sub while this node was disconnected (pub/sub has no redelivery)
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.redis.catch-up-interval-ms:30000}",
+            initialDelayString = "${app.jwt.revocation.redis.catch-up-interval-ms:30000}")
+    public synchronized void catchUp() {
+        // Stream ids start with their epoch millis, so the lifetime bound is a plain id bound
+        String horizon = catchUpHorizonMillis(jwtUtil.getAccessTokenExpiration()) + "-0";
+        String from = lastSeenId != null && compareIds(lastSeenId, horizon) > 0 ? lastSeenId : horizon;
+        try {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                    .reverseRange(stream, Range.rightUnbounded(Range.Bound.exclusive(from)),
+                            Limit.limit().count(catchUpMaxEvents));
+            for (int i = records.size() - 1; i >= 0; i--) {
+                MapRecord<String, Object, Object> record = records.get(i);
+                String id = record.getId().getValue();
+                Object payload = record.getValue().get(FIELD);
+                if (payload != null && !receivedLive.remove(id)) {
+                    deliver(payload.toString(), true);
+                }
+                lastSeenId = id;
+            }
+            String cursor = lastSeenId;
+            if (cursor != null) {
+                receivedLive.removeIf(id -> compareIds(id, cursor) <= 0);
+            }
+            if (records.size() >= catchUpMaxEvents) {
+                log.warn("Revocation catch-up truncated to the newest {} events", catchUpMaxEvents);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Revocation catch-up from Redis failed: {}", e.getMessage());
+        }
+    }
+
+    private void send(RevocationEvent event) {
+        try {
+            String payload = event.encode();
+            RecordId id = redisTemplate.opsForStream().add(
+                    StreamRecords.newRecord().in(stream).ofMap(Map.of(FIELD, payload)),
+                    XAddOptions.maxlen(streamMaxLength).approximateTrimming(true));
+            redisTemplate.convertAndSend(channel, id.getValue() + "|" + payload);
+            recordPublished();
+        } catch (DataAccessException e) {
+            recordPublishFailure(event, e);
+        }
+    }
+
+    private void onMessage(String message) {
+        int separator = message.indexOf('|');
+        if (separator < 0) {
+            log.warn("Ignoring malformed revocation message");
+            return;
+        }
+        receivedLive.add(message.substring(0, separator));
+        deliver(message.substring(separator + 1), false);
+    }
+
+    // Stream ids are "<millis>-<sequence>"
+    static int compareIds(String a, String b) {
+        int dashA = a.indexOf('-');
+        int dashB = b.indexOf('-');
+        int byTime = Long.compare(Long.parseLong(a.substring(0, dashA)), Long.parseLong(b.substring(0, dashB)));
+        return byTime != 0 ? byTime
+                : Long.compare(Long.parseLong(a.substring(dashA + 1)), Long.parseLong(b.substring(dashB + 1)));
+    }
+}
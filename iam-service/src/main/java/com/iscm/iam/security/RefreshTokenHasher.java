@@ -0,0 +1,60 @@
+package com.iscm.iam.security;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Produces the deterministic digest under which refresh tokens are stored in user_sessions.
+ * Refresh tokens are high-entropy values, so a keyed HMAC-SHA256 is sufficient and, unlike
+ * BCrypt, lets a session be found with a single indexed equality lookup.
+ */
+@Component
+public class RefreshTokenHasher {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${app.session.refresh-token-hash-secret:${app.jwt.refresh-secret}}")
+    private String hashSecret;
+
+    private SecretKeySpec secretKey;
+
+    // Mac instances are not thread-safe, keep one per request thread
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::createMac);
+
+    @PostConstruct
+    private void init() {
+        this.secretKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    public String hash(String refreshToken) {
+        if (refreshToken == null) {
+            throw new IllegalArgumentException("Refresh token cannot be null");
+        }
+        Mac mac = macHolder.get();
+        return HexFormat.of().formatHex(mac.doFinal(refreshToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Sessions created before the digest scheme stored a salted BCrypt hash.
+     */
+    public boolean isLegacyHash(String storedHash) {
+        return storedHash != null && storedHash.startsWith("$2");
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
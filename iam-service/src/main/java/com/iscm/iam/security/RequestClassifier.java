@@ -0,0 +1,172 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern.RequestType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps a request to its rate limit policy by the route template it hits, e.g.
+ * /api/v1/users/{id}. Templates come from the registered request mappings and are compiled into a
+ * trie of path segments once the context is ready, so classifying a request is a walk over its
+ * segments and memory is bounded by the number of routes rather than distinct URLs. Every route
+ * of a type shares one immutable {@link RequestPattern}. Paths matching no route are general API
+ * traffic.
+ */
+@Slf4j
+@Component
+public class RequestClassifier {
+
+    private static final String ANY_METHOD = "*";
+
+    private final ObjectProvider<RequestMappingHandlerMapping> handlerMappings;
+    private final Map<RequestType, RequestPattern> policies = new EnumMap<>(RequestType.class);
+
+    private volatile Node routes;
+
+    public RequestClassifier(RateLimitProperties properties,
+                             ObjectProvider<RequestMappingHandlerMapping> handlerMappings) {
+        this.handlerMappings = handlerMappings;
+        policies.put(RequestType.AUTH_LOGIN, new RequestPattern(RequestType.AUTH_LOGIN, properties.getAuth(), "login:"));
+        policies.put(RequestType.AUTH_REGISTER, new RequestPattern(RequestType.AUTH_REGISTER, properties.getAuth(), "register:"));
+        policies.put(RequestType.AUTH_PASSWORD_RESET, new RequestPattern(RequestType.AUTH_PASSWORD_RESET, properties.getAuth(), "reset:"));
+        policies.put(RequestType.AUTH_MFA, new RequestPattern(RequestType.AUTH_MFA, properties.getAuth(), "mfa:"));
+        policies.put(RequestType.API_SENSITIVE, new RequestPattern(RequestType.API_SENSITIVE, properties.getAdmin(), "admin:"));
+        policies.put(RequestType.API_GENERAL, new RequestPattern(RequestType.API_GENERAL, properties.getApi(), "api:"));
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void build() {
+        Node root = new Node();
+        int[] templates = {0};
+        handlerMappings.orderedStream().forEach(mapping -> {
+            for (RequestMappingInfo info : mapping.getHandlerMethods().keySet()) {
+                Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+                for (String template : info.getPatternValues()) {
+                    Node node = root.insert(segments(template));
+                    if (methods.isEmpty()) {
+                        node.policies.putIfAbsent(ANY_METHOD, classifyTemplate(template, ANY_METHOD));
+                    }
+                    for (RequestMethod method : methods) {
+                        node.policies.put(method.name(), classifyTemplate(template, method.name()));
+                    }
+                    templates[0]++;
+                }
+            }
+        });
+        routes = root;
+        log.info("Compiled {} route templates for rate limiting", templates[0]);
+    }
+
+    /**
+     * @param path request path without the context path, e.g. /api/v1/users/42
+     */
+    public RequestPattern classify(String path, String method) {
+        Node root = routes;
+        if (root == null) {
+            // Before the routes are compiled, the raw path is classified without being kept
+            return classifyTemplate(path, method);
+        }
+        Node node = root.match(segments(path), 0);
+        if (node == null) {
+            return policies.get(RequestType.API_GENERAL);
+        }
+        RequestPattern policy = node.policies.get(method);
+        if (policy == null) {
+            policy = node.policies.get(ANY_METHOD);
+        }
+        return policy != null ? policy : policies.get(RequestType.API_GENERAL);
+    }
+
+    private RequestPattern classifyTemplate(String path, String method) {
+        if (path.startsWith("/api/v1/auth/login")) {
+            return policies.get(RequestType.AUTH_LOGIN);
+        } else if (path.startsWith("/api/v1/auth/register")) {
+            return policies.get(RequestType.AUTH_REGISTER);
+        } else if (path.startsWith("/api/v1/auth/password/reset") || path.startsWith("/api/v1/password-reset")) {
+            return policies.get(RequestType.AUTH_PASSWORD_RESET);
+        } else if (path.contains("/mfa/")) {
+            return policies.get(RequestType.AUTH_MFA);
+        } else if ((path.startsWith("/api/v1/users/") && method.equals("POST"))
+                || path.startsWith("/api/v1/admin/")) {
+            return policies.get(RequestType.API_SENSITIVE);
+        } else {
+            return policies.get(RequestType.API_GENERAL);
+        }
+    }
+
+    private static String[] segments(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        if (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> literals = new HashMap<>();
+        // Matches any one segment: {id}, {id:\d+}, *, or a segment mixing text and variables
+        private Node variable;
+        // Matches the rest of the path: ** or {*rest}
+        private Node remainder;
+        private final Map<String, RequestPattern> policies = new HashMap<>();
+
+        Node insert(String[] segments) {
+            Node node = this;
+            for (String segment : segments) {
+                if (segment.equals("**") || segment.startsWith("{*")) {
+                    if (node.remainder == null) {
+                        node.remainder = new Node();
+                    }
+                    return node.remainder;
+                }
+                if (segment.contains("{") || segment.contains("*")) {
+                    if (node.variable == null) {
+                        node.variable = new Node();
+                    }
+                    node = node.variable;
+                } else {
+                    node = node.literals.computeIfAbsent(segment, s -> new Node());
+                }
+            }
+            return node;
+        }
+
+        // Literal segments win over variables, which win over a remainder, as in Spring's matching
+        Node match(String[] segments, int index) {
+            if (index == segments.length) {
+                if (!policies.isEmpty()) {
+                    return this;
+                }
+                return remainder;
+            }
+            Node literal = literals.get(segments[index]);
+            if (literal != null) {
+                Node matched = literal.match(segments, index + 1);
+                if (matched != null) {
+                    return matched;
+                }
+            }
+            if (variable != null) {
+                Node matched = variable.match(segments, index + 1);
+                if (matched != null) {
+                    return matched;
+                }
+            }
+            return remainder;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.iscm.iam.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * A revocation made on one node that every other node must apply to its in-memory copy, or a
+ * registration that other nodes' email membership filters must learn about. Encoded as a compact
+ * pipe-separated line so it fits a NOTIFY payload or a pub/sub message.
+ *
+ * @param subject jti for {@link Type#JTI}, the Base64url-encoded email for {@link Type#EMAIL_REGISTERED},
+ *                otherwise the user or tenant id
+ * @param value token expiry (epoch seconds) for a jti, the watermark (epoch millis) for a watermark,
+ *              otherwise 0
+ * @param publishedAt epoch millis on the publishing node, used to measure propagation lag
+ * @param origin id of the publishing node, so nodes ignore their own events
+ */
+public record RevocationEvent(Type type, String subject, long value, long publishedAt, String origin) {
+
+    public enum Type {
+        JTI, USER_WATERMARK, TENANT_WATERMARK, EMAIL_REGISTERED
+    }
+
+    public static RevocationEvent jti(String jti, long expiresAt, String origin) {
+        return new RevocationEvent(Type.JTI, jti, expiresAt, System.currentTimeMillis(), origin);
+    }
+
+    public static RevocationEvent watermark(Type type, UUID subjectId, long revokedBefore, String origin) {
+        return new RevocationEvent(type, subjectId.toString(), revokedBefore, System.currentTimeMillis(), origin);
+    }
+
+    // Encoded, so an email containing the separator survives the round trip
+    public static RevocationEvent emailRegistered(String email, String origin) {
+        String subject = Base64.getUrlEncoder().withoutPadding().encodeToString(email.getBytes(StandardCharsets.UTF_8));
+        return new RevocationEvent(Type.EMAIL_REGISTERED, subject, 0, System.currentTimeMillis(), origin);
+    }
+
+    public String email() {
+        return new String(Base64.getUrlDecoder().decode(subject), StandardCharsets.UTF_8);
+    }
+
+    public String encode() {
+        return type + "|" + subject + "|" + value + "|" + publishedAt + "|" + origin;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the line is not a valid encoded event
+     */
+    public static RevocationEvent decode(String line) {
+        String[] parts = line.split("\\|", 5);
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed revocation event: " + line);
+        }
+        return new RevocationEvent(Type.valueOf(parts[0]), parts[1],
+                Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4]);
+    }
+}
@@ -0,0 +1,33 @@
+package com.iscm.iam.security;
+
+import java.util.UUID;
+
+/**
+ * Spreads revocations made on this node to the rest of the cluster. Each node keeps its own
+ * in-memory revocation state (jti list and watermarks) and applies events from other nodes
+ * as they arrive, so checking a token never needs a remote lookup.
+ *
+ * Received events are published as {@link RevocationEvent} application events; the backend
+ * is chosen with {@code app.jwt.revocation.propagation} (none, postgres or redis).
+ */
+public interface RevocationPropagator {
+
+    /**
+     * Identifies this node in published events
+     */
+    String getNodeId();
+
+    void publish(RevocationEvent event);
+
+    default void publishJti(String jti, long expiresAt) {
+        publish(RevocationEvent.jti(jti, expiresAt, getNodeId()));
+    }
+
+    default void publishWatermark(RevocationEvent.Type type, UUID subjectId, long revokedBefore) {
+        publish(RevocationEvent.watermark(type, subjectId, revokedBefore, getNodeId()));
+    }
+
+    default void publishEmailRegistered(String email) {
+        publish(RevocationEvent.emailRegistered(email, getNodeId()));
+    }
+}
@@ -0,0 +1,130 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.model.TokenRevocationWatermark;
+import com.iscm.iam.model.TokenRevocationWatermark.SubjectType;
+import com.iscm.iam.repository.TokenRevocationWatermarkRepository;
+import com.iscm.iam.util.UuidLongMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * Revokes every access token of a user or tenant with a single "issued at or before T"
+ * watermark instead of enumerating tokens. Watermarks are persisted and mirrored in
+ * primitive-keyed in-memory maps that the authentication filter reads without locking.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationWatermarkService {
+
+    private final TokenRevocationWatermarkRepository watermarkRepository;
+    private final JwtUtil jwtUtil;
+    private final RevocationPropagator revocationPropagator;
+
+    private final UuidLongMap userWatermarks = new UuidLongMap();
+    private final UuidLongMap tenantWatermarks = new UuidLongMap();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadWatermarks() {
+        try {
+            watermarkRepository.findActiveWatermarks(expiryCutoff()).forEach(this::apply);
+            log.info("Loaded {} user and {} tenant revocation watermarks",
+                    userWatermarks.size(), tenantWatermarks.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to load revocation watermarks: {}", e.getMessage());
+        }
+    }
+
+    @Transactional
+    public long revokeAllUserTokens(UUID userId) {
+        return revoke(SubjectType.USER, userId);
+    }
+
+    @Transactional
+    public long revokeAllTenantTokens(UUID tenantId) {
+        return revoke(SubjectType.TENANT, tenantId);
+    }
+
+    /**
+     * Watermarks and issued-at are epoch millis, so the login that usually follows "log out
+     * everywhere" gets a later issued-at than the watermark and stays valid.
+     * Lock-free and allocation-free; ids are read in their string form straight from the claims.
+     */
+    public boolean isRevoked(String userId, String tenantId, long issuedAtMillis) {
+        long userWatermark = userWatermarks.get(userId);
+        if (userWatermark != 0 && issuedAtMillis <= userWatermark) {
+            return true;
+        }
+        long tenantWatermark = tenantId != null ? tenantWatermarks.get(tenantId) : 0;
+        return tenantWatermark != 0 && issuedAtMillis <= tenantWatermark;
+    }
+
+    public long getUserWatermark(UUID userId) {
+        return userWatermarks.get(userId);
+    }
+
+    /**
+     * Applies a watermark recorded elsewhere (e.g. by another instance)
+     */
+    public void apply(SubjectType subjectType, UUID subjectId, long revokedBefore) {
+        (subjectType == SubjectType.USER ? userWatermarks : tenantWatermarks).putMax(subjectId, revokedBefore);
+    }
+
+    /**
+     * Applies a watermark revoked on another node, without propagating it again
+     */
+    @EventListener
+    public void onRemoteRevocation(RevocationEvent event) {
+        switch (event.type()) {
+            case USER_WATERMARK -> apply(SubjectType.USER, UUID.fromString(event.subject()), event.value());
+            case TENANT_WATERMARK -> apply(SubjectType.TENANT, UUID.fromString(event.subject()), event.value());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Once a watermark is older than the access token lifetime no live token can match it
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation-watermarks.cleanup-interval-ms:600000}")
+    @Transactional
+    public void purgeExpiredWatermarks() {
+        long cutoff = expiryCutoff();
+        userWatermarks.retainIf(watermark -> watermark > cutoff);
+        tenantWatermarks.retainIf(watermark -> watermark > cutoff);
+        try {
+            int deleted = watermarkRepository.deleteExpiredWatermarks(cutoff);
+            if (deleted > 0) {
+                log.debug("Purged {} expired revocation watermarks", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge revocation watermarks: {}", e.getMessage());
+        }
+    }
+
+    private long revoke(SubjectType subjectType, UUID subjectId) {
+        long now = System.currentTimeMillis();
+        watermarkRepository.upsertWatermark(subjectType.name(), subjectId, now);
+        apply(subjectType, subjectId, now);
+        revocationPropagator.publishWatermark(subjectType == SubjectType.USER
+                ? RevocationEvent.Type.USER_WATERMARK : RevocationEvent.Type.TENANT_WATERMARK, subjectId, now);
+        log.info("Revoked all access tokens issued up to {} for {} {}", now, subjectType, subjectId);
+        return now;
+    }
+
+    private void apply(TokenRevocationWatermark watermark) {
+        apply(watermark.getSubjectType(), watermark.getSubjectId(), watermark.getRevokedBeforeMillis());
+    }
+
+    private long expiryCutoff() {
+        return System.currentTimeMillis() - jwtUtil.getAccessTokenExpiration() * 1000;
+    }
+}
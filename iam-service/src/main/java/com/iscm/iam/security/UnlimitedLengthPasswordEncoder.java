@@ -1,19 +1,41 @@
 package com.iscm.iam.security;
 
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
 
-@Component
+/**
+ * Hashes new passwords with BCrypt or Argon2id and verifies hashes of either kind.
+ * BCrypt only reads the first 72 bytes, so longer passwords are pre-hashed with SHA-256
+ * on both encode and match. upgradeEncoding reports hashes made with another algorithm or
+ * weaker parameters, so they are re-hashed on the next successful login.
+ */
 public class UnlimitedLengthPasswordEncoder implements PasswordEncoder {
 
-    private final org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder bcryptEncoder;
+    public enum Algorithm {
+        BCRYPT, ARGON2ID
+    }
+
+    private static final int BCRYPT_MAX_BYTES = 72;
+    private static final int CALIBRATION_PROBE_COST = 10;
+
+    private final Algorithm algorithm;
+    private final BCryptPasswordEncoder bcryptEncoder;
+    private final Argon2PasswordEncoder argon2Encoder;
 
     public UnlimitedLengthPasswordEncoder() {
-        this.bcryptEncoder = new org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder(12);
+        this(Algorithm.BCRYPT, 12, Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+    }
+
+    public UnlimitedLengthPasswordEncoder(Algorithm algorithm, int bcryptCost, Argon2PasswordEncoder argon2Encoder) {
+        this.algorithm = algorithm;
+        this.bcryptEncoder = new BCryptPasswordEncoder(bcryptCost);
+        this.argon2Encoder = argon2Encoder;
     }
 
     @Override
@@ -21,15 +43,9 @@ public class UnlimitedLengthPasswordEncoder implements PasswordEncoder {
         if (rawPassword == null) {
             throw new IllegalArgumentException("Password cannot be null");
         }
-
-        String password = rawPassword.toString();
-
-        // Keep preprocessing for encoding very long passwords only
-        if (password.getBytes(java.nio.charset.StandardCharsets.UTF_8).length > 72) {
-            return encodeLongPassword(password);
-        }
-
-        return bcryptEncoder.encode(password);
+        return algorithm == Algorithm.ARGON2ID
+                ? argon2Encoder.encode(rawPassword)
+                : bcryptEncoder.encode(bcryptInput(rawPassword.toString()));
     }
 
     @Override
@@ -37,26 +53,49 @@ public class UnlimitedLengthPasswordEncoder implements PasswordEncoder {
         if (rawPassword == null || encodedPassword == null) {
             return false;
         }
+        return isArgon2(encodedPassword)
+                ? argon2Encoder.matches(rawPassword, encodedPassword)
+                : bcryptEncoder.matches(bcryptInput(rawPassword.toString()), encodedPassword);
+    }
 
-        String password = rawPassword.toString();
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        if (algorithm == Algorithm.ARGON2ID) {
+            return !isArgon2(encodedPassword) || argon2Encoder.upgradeEncoding(encodedPassword);
+        }
+        return isArgon2(encodedPassword) || bcryptEncoder.upgradeEncoding(encodedPassword);
+    }
 
-        // OPTIMIZED: Always use bcrypt directly for validation
-        // This eliminates the expensive SHA-256 preprocessing during login
-        return bcryptEncoder.matches(password, encodedPassword);
+    /**
+     * Picks the highest BCrypt cost whose hash takes no longer than the target on this machine.
+     * Each cost step doubles the work, so one timed probe is enough to extrapolate.
+     */
+    public static int calibrateBCryptCost(long targetMillis, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(CALIBRATION_PROBE_COST);
+        probe.encode("calibration-warm-up");
+        long start = System.nanoTime();
+        probe.encode("calibration-probe");
+        double probeMillis = Math.max(1.0, (System.nanoTime() - start) / 1_000_000.0);
+        int cost = CALIBRATION_PROBE_COST + (int) Math.floor(Math.log(targetMillis / probeMillis) / Math.log(2));
+        return Math.max(minCost, Math.min(maxCost, cost));
     }
 
-    private String encodeLongPassword(String password) {
-        String preprocessedPassword = preprocessPassword(password);
-        return bcryptEncoder.encode(preprocessedPassword);
+    private static boolean isArgon2(String encodedPassword) {
+        return encodedPassword.startsWith("$argon2");
     }
 
-    private String preprocessPassword(String password) {
+    private static String bcryptInput(String password) {
+        if (password.getBytes(StandardCharsets.UTF_8).length <= BCRYPT_MAX_BYTES) {
+            return password;
+        }
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hash);
+            return HexFormat.of().formatHex(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("SHA-256 algorithm not available", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package com.iscm.iam.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the latest login time per user and the latest access time per session in memory and
+ * writes them in periodic JDBC batches, so activity tracking costs one row update per user or
+ * session per flush instead of one per login or request. Pending entries are flushed on shutdown.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActivityWriteBehindBuffer {
+
+    // Never move a timestamp backwards, e.g. when a slower node flushes an older value
+    private static final String UPDATE_LAST_LOGIN_SQL =
+            "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)";
+
+    // The expires_at bound lets Postgres skip the partitions of sessions that have already expired
+    private static final String UPDATE_LAST_ACCESS_SQL =
+            "UPDATE user_sessions SET last_accessed_at = ? WHERE id = ? AND expires_at > ? "
+                    + "AND (last_accessed_at IS NULL OR last_accessed_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.activity.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.activity.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<UUID, LocalDateTime> pendingLogins = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, LocalDateTime> pendingSessionAccesses = new ConcurrentHashMap<>();
+
+    public void recordLogin(UUID userId, LocalDateTime loginAt) {
+        if (!enabled) {
+            return;
+        }
+        pendingLogins.merge(userId, loginAt, ActivityWriteBehindBuffer::latest);
+    }
+
+    public void recordSessionAccess(UUID sessionId, LocalDateTime accessedAt) {
+        if (!enabled) {
+            return;
+        }
+        pendingSessionAccesses.merge(sessionId, accessedAt, ActivityWriteBehindBuffer::latest);
+    }
+
+    @Scheduled(fixedDelayString = "${app.activity.write-behind.flush-interval-ms:10000}")
+    public void flush() {
+        flush(pendingLogins, UPDATE_LAST_LOGIN_SQL, "last login",
+                (userId, at, now) -> new Object[] {at, userId, at});
+        flush(pendingSessionAccesses, UPDATE_LAST_ACCESS_SQL, "session access",
+                (sessionId, at, now) -> new Object[] {at, sessionId, now, at});
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        // Runs before the data source is closed, since this bean depends on it
+        flush();
+        if (!pendingLogins.isEmpty() || !pendingSessionAccesses.isEmpty()) {
+            log.warn("Shutting down with {} login and {} session activity update(s) unwritten",
+                    pendingLogins.size(), pendingSessionAccesses.size());
+        }
+    }
+
+    public int pendingCount() {
+        return pendingLogins.size() + pendingSessionAccesses.size();
+    }
+
+    private void flush(ConcurrentHashMap<UUID, LocalDateTime> pending, String sql, String kind, RowArgs rowArgs) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<UUID, LocalDateTime>> drained = drain(pending);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            for (int from = 0; from < drained.size(); from += batchSize) {
+                List<Object[]> batch = new ArrayList<>();
+                for (Map.Entry<UUID, LocalDateTime> entry : drained.subList(from, Math.min(from + batchSize, drained.size()))) {
+                    batch.add(rowArgs.of(entry.getKey(), Timestamp.valueOf(entry.getValue()), now));
+                }
+                jdbcTemplate.batchUpdate(sql, batch);
+            }
+            log.debug("Flushed {} {} update(s)", drained.size(), kind);
+        } catch (DataAccessException e) {
+            // Put them back; a newer value recorded meanwhile wins the merge
+            drained.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), ActivityWriteBehindBuffer::latest));
+            log.warn("Flushing {} updates failed, will retry on the next run: {}", kind, e.getMessage());
+        }
+    }
+
+    // Removes only entries unchanged since they were read, so concurrent updates stay for the next flush
+    private static List<Map.Entry<UUID, LocalDateTime>> drain(ConcurrentHashMap<UUID, LocalDateTime> pending) {
+        List<Map.Entry<UUID, LocalDateTime>> drained = new ArrayList<>();
+        for (Map.Entry<UUID, LocalDateTime> entry : pending.entrySet()) {
+            UUID key = entry.getKey();
+            LocalDateTime value = entry.getValue();
+            if (pending.remove(key, value)) {
+                drained.add(Map.entry(key, value));
+            }
+        }
+        return drained;
+    }
+
+    @FunctionalInterface
+    private interface RowArgs {
+        Object[] of(UUID id, Timestamp at, Timestamp now);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
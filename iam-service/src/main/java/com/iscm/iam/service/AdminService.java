@@ -1,5 +1,6 @@
 package com.iscm.iam.service;
 
+import com.iscm.iam.cache.CacheService;
 import com.iscm.iam.dto.AdminUserCreateRequest;
 import com.iscm.iam.dto.AdminUserUpdateRequest;
 import com.iscm.iam.dto.UserStatisticsResponse;
@@ -8,6 +9,7 @@ import com.iscm.iam.model.User;
 import com.iscm.iam.model.UserRole;
 import com.iscm.iam.repository.RoleRepository;
 import com.iscm.iam.repository.UserRepository;
+import com.iscm.iam.security.LoginAttemptTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -31,6 +33,9 @@ public class AdminService {
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final PasswordService passwordService;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final CacheService cacheService;
+    private final EmailMembershipFilter emailMembershipFilter;
 
     @Transactional(readOnly = true)
     public Page<User> getAllUsers(Pageable pageable) {
@@ -46,7 +51,7 @@ public class AdminService {
     @Transactional
     public User createUser(AdminUserCreateRequest request) {
         // Check if user already exists
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (emailMembershipFilter.existsByEmail(request.getEmail())) {
             throw new RuntimeException("User with email " + request.getEmail() + " already exists");
         }
 
@@ -63,7 +68,8 @@ public class AdminService {
         user.setTenantId(request.getTenantId());
 
         // Save user
-        user = userRepository.save(user);
+        user = userRepository.saveAndFlush(user);
+        emailMembershipFilter.recordEmail(user.getEmail());
 
         // Assign roles if provided
         if (request.getRoles() != null && !request.getRoles().isEmpty()) {
@@ -84,10 +90,11 @@ public class AdminService {
         // Update user fields if provided
         if (request.getEmail() != null && !request.getEmail().equals(user.getEmail())) {
             // Check if new email is already taken
-            if (userRepository.existsByEmail(request.getEmail())) {
+            if (emailMembershipFilter.existsByEmail(request.getEmail())) {
                 throw new RuntimeException("User with email " + request.getEmail() + " already exists");
             }
             user.setEmail(request.getEmail());
+            emailMembershipFilter.recordEmail(request.getEmail());
         }
 
         if (request.getFirstName() != null) {
@@ -123,6 +130,7 @@ public class AdminService {
         }
 
         user = userRepository.save(user);
+        cacheService.evictUser(user.getId());
         log.info("Admin updated user: {}", user.getEmail());
         return user;
     }
@@ -137,6 +145,7 @@ public class AdminService {
         }
 
         userRepository.delete(user);
+        cacheService.evictUser(userId);
         log.info("Admin deleted user: {}", user.getEmail());
     }
 
@@ -148,6 +157,7 @@ public class AdminService {
         user.setAccountLockedUntil(lockUntil);
 
         userRepository.save(user);
+        cacheService.evictUser(userId);
         log.info("Admin locked user {} until {}", user.getEmail(), lockUntil);
     }
 
@@ -158,6 +168,8 @@ public class AdminService {
         user.setFailedLoginAttempts(0);
 
         userRepository.save(user);
+        loginAttemptTracker.reset(user.getEmail());
+        cacheService.evictUser(userId);
         log.info("Admin unlocked user: {}", user.getEmail());
     }
 
@@ -1,5 +1,6 @@
 package com.iscm.iam.service;
 
+import com.iscm.iam.cache.CacheService;
 import com.iscm.iam.dto.AuthRequest;
 import com.iscm.iam.dto.AuthResponse;
 import com.iscm.iam.dto.RegisterRequest;
@@ -11,24 +12,25 @@ import com.iscm.iam.repository.OrganizationRepository;
 import com.iscm.iam.repository.RoleRepository;
 import com.iscm.iam.repository.UserRepository;
 import com.iscm.iam.security.JwtUtil;
-// import com.iscm.iam.security.JwtBlacklistService;
+import com.iscm.iam.security.JwtBlacklistService;
+import com.iscm.iam.security.LoginAttemptTracker;
+import com.iscm.iam.security.PermissionBitsAuthentication;
+import com.iscm.iam.security.PermissionSet;
 import com.iscm.iam.security.SecurityMonitoringService;
-// import com.iscm.iam.cache.CacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 // import org.springframework.cache.annotation.Cacheable;
 // import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.LockedException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -42,40 +44,75 @@ public class AuthService {
     private final UserService userService;
     private final UserSessionService sessionService;
     private final PasswordService passwordService;
-    private final AuthenticationManager authenticationManager;
+    private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
-    // private final JwtBlacklistService jwtBlacklistService;
+    private final RolePermissionSnapshot rolePermissionSnapshot;
+    private final JwtBlacklistService jwtBlacklistService;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final ActivityWriteBehindBuffer activityBuffer;
+    private final EmailMembershipFilter emailMembershipFilter;
     // private final SecurityMonitoringService securityMonitoringService;
-    // private final CacheService cacheService;
+    private final CacheService cacheService;
     // private final AsyncProcessingService asyncProcessingService;
 
-    @Transactional
+    /**
+     * Login in two statements: the user is read once with its roles (permissions come from the
+     * in-memory snapshot), the password is verified here, and the session is inserted. The loaded
+     * user is read-only and never saved back; the login time goes through the write-behind buffer.
+     * Failed attempts are counted in memory; only a resulting lock is written.
+     */
+    // A lock must survive the BadCredentialsException that ends the failed login causing it
+    @Transactional(noRollbackFor = BadCredentialsException.class)
     // @Cacheable(value = "users", key = "#request.email")
     public AuthResponse login(AuthRequest request) {
-        // Get user from database (cache disabled)
-        User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new BadCredentialsException("Invalid credentials"));
+        // Refuse locked accounts and noisy IPs before reading the user or hashing the password
+        if (loginAttemptTracker.isIpBlocked(request.getIpAddress())) {
+            throw new LockedException("Too many failed login attempts. Try again later.");
+        }
+        if (loginAttemptTracker.accountLockedUntil(request.getEmail()) != null) {
+            throw new LockedException("Account temporarily locked. Try again later.");
+        }
 
-        // Check if account is locked
+        // Emails known not to be registered never reach the database
+        User user = (emailMembershipFilter.mightExist(request.getEmail())
+                ? userRepository.findForLogin(request.getEmail())
+                : Optional.<User>empty())
+                .orElseThrow(() -> {
+                    emailMembershipFilter.recordAbsent(request.getEmail());
+                    // Unknown emails count too, so probing for accounts is throttled the same way
+                    loginAttemptTracker.recordFailure(request.getEmail(), request.getIpAddress());
+                    return new BadCredentialsException("Invalid credentials");
+                });
+
+        // Locks persisted by another node or by an admin
         if (!user.isAccountNonLocked()) {
             throw new LockedException("Account temporarily locked. Try again later.");
         }
 
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    request.getEmail(), 
-                    request.getPassword()
-                )
-            );
+            if (!Boolean.TRUE.equals(user.getIsActive()) ||
+                !passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+                throw new BadCredentialsException("Invalid credentials");
+            }
+            if (passwordEncoder.upgradeEncoding(user.getPasswordHash())) {
+                userService.upgradePasswordHash(user, passwordEncoder.encode(request.getPassword()));
+            }
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+            List<String> roles = user.getUserRoles().stream()
+                    .map(userRole -> userRole.getRole().getName())
+                    .toList();
+
+            loginAttemptTracker.reset(user.getEmail());
+            // Only a previously persisted lock needs clearing on the user row
+            if (user.getFailedLoginAttempts() > 0 || user.getAccountLockedUntil() != null) {
+                userRepository.recordFailedLogin(user.getId(), 0, null);
+                cacheService.evictUser(user.getId());
+            }
+            activityBuffer.recordLogin(user.getId(), LocalDateTime.now());
 
-            // Reset failed attempts on successful login
-            user.setFailedLoginAttempts(0);
-            user.setAccountLockedUntil(null);
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
+            PermissionSet permissions = rolePermissionSnapshot.getPermissionSet(roles);
+            SecurityContextHolder.getContext().setAuthentication(
+                new PermissionBitsAuthentication(user.getEmail(), permissions));
 
             // Cache the updated user
             // cacheService.cacheUser(user);
@@ -92,18 +129,13 @@ public class AuthService {
             // Send login notification asynchronously - DISABLED
             // asyncProcessingService.sendLoginNotificationAsync(user, request.getIpAddress(), request.getUserAgent());
 
-            // Generate tokens
-            List<String> roles = user.getUserRoles().stream()
-                    .map(userRole -> userRole.getRole().getName())
-                    .toList();
-
-            String accessToken = jwtUtil.generateAccessToken(
-                user.getId(), user.getEmail(), roles, user.getTenantId());
+            // Generate tokens; the session goes first so the access token can carry its id
             String refreshToken = jwtUtil.generateRefreshToken(user.getId());
-
-            // Save refresh token
-            sessionService.createSession(user, refreshToken, 
+            UserSession session = sessionService.createSession(user, refreshToken,
                                        request.getUserAgent(), request.getIpAddress());
+            String accessToken = jwtUtil.generateAccessToken(
+                user.getId(), user.getEmail(), roles, user.getTenantId(), currentPermissionsVersion(),
+                session.getId(), permissions);
 
             return AuthResponse.builder()
                     .accessToken(accessToken)
@@ -133,14 +165,14 @@ public class AuthService {
             // );
 
             // Increment failed attempts
-            handleFailedLogin(user);
+            handleFailedLogin(user, request.getIpAddress());
             throw new BadCredentialsException("Invalid credentials");
         }
     }
 
     @Transactional
     public AuthResponse register(RegisterRequest request) {
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (emailMembershipFilter.existsByEmail(request.getEmail())) {
             throw new IllegalArgumentException("Email already exists");
         }
 
@@ -174,7 +206,8 @@ public class AuthService {
         user.setOrganization(organization);
         user.setTenantId(organization != null ? organization.getId() : UUID.fromString("00000000-0000-0000-0000-000000000000"));
 
-        User savedUser = userRepository.save(user);
+        User savedUser = userRepository.saveAndFlush(user);
+        emailMembershipFilter.recordEmail(savedUser.getEmail());
 
         // Assign default role using UserService
         userService.assignRoleToUser(savedUser, defaultRole, null);
@@ -184,11 +217,11 @@ public class AuthService {
                 .map(userRole -> userRole.getRole().getName())
                 .toList();
 
-        String accessToken = jwtUtil.generateAccessToken(
-            savedUser.getId(), savedUser.getEmail(), roles, savedUser.getTenantId());
         String refreshToken = jwtUtil.generateRefreshToken(savedUser.getId());
-
-        sessionService.createSession(savedUser, refreshToken, null, null);
+        UserSession session = sessionService.createSession(savedUser, refreshToken, null, null);
+        String accessToken = jwtUtil.generateAccessToken(
+            savedUser.getId(), savedUser.getEmail(), roles, savedUser.getTenantId(), currentPermissionsVersion(),
+            session.getId(), rolePermissionSnapshot.getPermissionSet(roles));
 
         // Process post-registration tasks asynchronously - DISABLED
         // asyncProcessingService.processUserRegistrationAsync(savedUser, null); // IP address not available in registration request
@@ -207,12 +240,21 @@ public class AuthService {
         UserSession session = sessionService.validateRefreshToken(refreshToken);
         User user = session.getUser();
 
+        // Stateless access tokens never load the user, so a disabled or locked account is stopped here
+        if (!Boolean.TRUE.equals(user.getIsActive())) {
+            throw new SecurityException("Account is disabled");
+        }
+        if (!user.isAccountNonLocked()) {
+            throw new LockedException("Account temporarily locked. Try again later.");
+        }
+
         List<String> roles = user.getUserRoles().stream()
                 .map(userRole -> userRole.getRole().getName())
                 .toList();
 
         String newAccessToken = jwtUtil.generateAccessToken(
-            user.getId(), user.getEmail(), roles, user.getTenantId());
+            user.getId(), user.getEmail(), roles, user.getTenantId(), currentPermissionsVersion(),
+            session.getId(), rolePermissionSnapshot.getPermissionSet(roles));
         String newRefreshToken = jwtUtil.generateRefreshToken(user.getId());
 
         // Update session with new refresh token
@@ -230,6 +272,11 @@ public class AuthService {
     @Transactional
     // @CacheEvict(value = {"users", "activeSessions"}, key = "#result?.id")
     public void logout(String refreshToken) {
+        logout(refreshToken, null);
+    }
+
+    @Transactional
+    public void logout(String refreshToken, String accessToken) {
         try {
             // Get session details for logging
             UserSession session = sessionService.findSessionByRefreshToken(refreshToken);
@@ -240,12 +287,10 @@ public class AuthService {
                 // Clear user cache on logout
                 // cacheService.clearUserCache(user.getId());
 
-                // Blacklist the refresh token - DISABLED
-                // jwtBlacklistService.blacklistToken(refreshToken, "User logout");
-
-                // Blacklist associated access token if available
-                // Note: In a real implementation, you might track the access token ID as well
-                log.debug("Blacklisted refresh token during logout for user: {}", user.getId());
+                // The refresh token dies with the session; revoke the presented access token until it expires
+                if (accessToken != null) {
+                    jwtBlacklistService.blacklistToken(accessToken, "User logout");
+                }
             } else {
                 log.warn("Logout attempt with invalid refresh token");
             }
@@ -263,8 +308,8 @@ public class AuthService {
     @Transactional
     public void logoutAllSessions(UUID userId) {
         try {
-            // Blacklist all tokens for the user - DISABLED
-            // jwtBlacklistService.blacklistAllUserTokens(userId, "User logout all sessions");
+            // Invalidate every access token issued so far with a single watermark
+            jwtBlacklistService.blacklistAllUserTokens(userId, "User logout all sessions");
             log.info("All tokens blacklisted for user during logout: userId={}", userId);
 
             // Revoke all user sessions
@@ -277,28 +322,34 @@ public class AuthService {
         }
     }
 
-    private void handleFailedLogin(User user) {
-        int newAttempts = user.getFailedLoginAttempts() + 1;
-        user.setFailedLoginAttempts(newAttempts);
-
-        // Lock account after 5 failed attempts for 30 minutes
-        if (newAttempts >= 5) {
-            user.setAccountLockedUntil(LocalDateTime.now().plusMinutes(30));
-            log.warn("Account locked for user: {} due to {} failed attempts",
-                    user.getEmail(), newAttempts);
-
-            // Log account lockout event - DISABLED
-            // securityMonitoringService.recordSecurityEventWithUser(
-            //     SecurityMonitoringService.SecurityEventType.ACCOUNT_LOCKED,
-            //     String.format("Account locked for user %s due to %d failed login attempts",
-            //         user.getEmail(), newAttempts),
-            //     null, // IP address not available here
-            //     null,
-            //     user
-            // );
+    // Tokens minted before the snapshot is loaded carry no version and use the database path
+    private Long currentPermissionsVersion() {
+        return rolePermissionSnapshot.isLoaded() ? rolePermissionSnapshot.getVersion() : null;
+    }
+
+    private void handleFailedLogin(User user, String ipAddress) {
+        LocalDateTime lockedUntil = loginAttemptTracker.recordFailure(user.getEmail(), ipAddress);
+        if (lockedUntil == null) {
+            return;
         }
 
-        userRepository.save(user);
+        // Lock account after too many failed attempts within the window; only the lock is written
+        log.warn("Account locked for user: {} until {} due to {} failed attempts",
+                user.getEmail(), lockedUntil, loginAttemptTracker.getMaxAccountAttempts());
+
+        // Log account lockout event - DISABLED
+        // securityMonitoringService.recordSecurityEventWithUser(
+        //     SecurityMonitoringService.SecurityEventType.ACCOUNT_LOCKED,
+        //     String.format("Account locked for user %s due to %d failed login attempts",
+        //         user.getEmail(), loginAttemptTracker.getMaxAccountAttempts()),
+        //     null, // IP address not available here
+        //     null,
+        //     user
+        // );
+
+        // Persisted so other nodes see the lock too
+        userRepository.recordFailedLogin(user.getId(), loginAttemptTracker.getMaxAccountAttempts(), lockedUntil);
+        cacheService.evictUser(user.getId());
     }
 
     private Role getDefaultRoleForRegistration() {
@@ -1,44 +1,117 @@
 package com.iscm.iam.service;
 
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.util.TokenBucketRateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * DISABLED STUB - Rate limiting service has been disabled for simplification.
- * This is a stub implementation that does not perform any rate limiting.
- * To re-enable rate limiting, restore the original implementation and add Redis dependencies.
+ * In-memory rate limiting on lock-free token buckets, one bucket set per distinct limit.
+ * {@code isRateLimited} allows {@code maxRequests} per {@code duration} per key, as a burst or
+ * spread out. Burst limiting counts how often a key was refused: {@link #recordBurst} records a
+ * refusal, and {@link #isBurstLimited} holds once {@code burstLimit} of them have not yet
+ * recovered. Limits are per node.
  */
 @Slf4j
-//@Service("basicRateLimitingService")
+@Service("basicRateLimitingService")
 public class BasicRateLimitingService {
 
-    // Disabled stub - no rate limiting performed
+    private final RateLimitProperties properties;
+    private final Clock clock;
+
+    private final Map<Limit, TokenBucketRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private final Map<Limit, TokenBucketRateLimiter> burstLimiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BasicRateLimitingService(RateLimitProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    BasicRateLimitingService(RateLimitProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
     public boolean isRateLimited(String key, int maxRequests, Duration duration) {
-        log.debug("Rate limiting disabled - allowing request for key: {}", key);
-        return false; // Always allow requests when rate limiting is disabled
+        return !limiter(rateLimiters, maxRequests, duration).tryAcquire(key);
     }
 
     public boolean isBurstLimited(String key, int burstLimit, Duration recoveryDuration) {
-        log.debug("Burst limiting disabled - allowing request for key: {}", key);
-        return false; // Always allow requests when burst limiting is disabled
+        return limiter(burstLimiters, burstLimit, recoveryDuration).available(key) == 0;
     }
 
     public void recordBurst(String key, Duration recoveryDuration) {
-        // Stub implementation - no action taken
-        log.debug("Burst recording disabled for key: {}", key);
+        long periodMillis = recoveryDuration.toMillis();
+        burstLimiters.forEach((limit, limiter) -> {
+            if (limit.periodMillis() == periodMillis) {
+                limiter.tryAcquire(key);
+            }
+        });
     }
 
     public long getRemainingRequests(String key, int maxRequests, Duration duration) {
-        // Return max requests since rate limiting is disabled
-        log.debug("Rate limiting disabled - returning max requests for key: {}", key);
-        return maxRequests;
+        return limiter(rateLimiters, maxRequests, duration).available(key);
     }
 
     public Duration getTimeUntilReset(String key, Duration duration) {
-        // Return zero since rate limiting is disabled
-        log.debug("Rate limiting disabled - no reset time for key: {}", key);
-        return Duration.ZERO;
+        long periodMillis = duration.toMillis();
+        Duration untilReset = Duration.ZERO;
+        for (Map.Entry<Limit, TokenBucketRateLimiter> entry : rateLimiters.entrySet()) {
+            if (entry.getKey().periodMillis() == periodMillis) {
+                Duration untilFull = entry.getValue().timeUntilFull(key);
+                if (untilFull.compareTo(untilReset) > 0) {
+                    untilReset = untilFull;
+                }
+            }
+        }
+        return untilReset;
+    }
+
+    /**
+     * Forgets the key in every limit, e.g. when an admin lifts a block.
+     */
+    public void reset(String key) {
+        rateLimiters.values().forEach(limiter -> limiter.reset(key));
+        burstLimiters.values().forEach(limiter -> limiter.reset(key));
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = 0;
+        for (TokenBucketRateLimiter limiter : rateLimiters.values()) {
+            evicted += limiter.evictIdle();
+        }
+        for (TokenBucketRateLimiter limiter : burstLimiters.values()) {
+            evicted += limiter.evictIdle();
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+
+    public int trackedKeys() {
+        int keys = 0;
+        for (TokenBucketRateLimiter limiter : rateLimiters.values()) {
+            keys += limiter.size();
+        }
+        for (TokenBucketRateLimiter limiter : burstLimiters.values()) {
+            keys += limiter.size();
+        }
+        return keys;
+    }
+
+    private TokenBucketRateLimiter limiter(Map<Limit, TokenBucketRateLimiter> limiters, int limit, Duration period) {
+        return limiters.computeIfAbsent(new Limit(limit, period.toMillis()), key -> new TokenBucketRateLimiter(
+                limit, period, properties.getStripes(), properties.getMaxKeys(), clock));
+    }
+
+    private record Limit(int limit, long periodMillis) {
     }
-}
\ No newline at end of file
+}
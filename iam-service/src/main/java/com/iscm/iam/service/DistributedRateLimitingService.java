@@ -0,0 +1,268 @@
+package com.iscm.iam.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iscm.iam.config.RateLimitProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window limits shared by all nodes through Redis. The window is counted by an atomic
+ * script; a node leases a share of a key's limit at a time and admits requests against that lease
+ * locally, so most requests make no Redis call. Tokens leased but not used before the lease
+ * expires stay counted, which can only make the limit stricter. A refused key is not asked for
+ * again until roughly one request would have freed up.
+ * <p>
+ * With app.rate-limit.redis.enabled=false, or for the retry interval after a Redis failure, the
+ * same limits are enforced per node by {@link BasicRateLimitingService}.
+ */
+@Slf4j
+@Service
+public class DistributedRateLimitingService {
+
+    private static final RedisScript<Long> SLIDING_WINDOW =
+            RedisScript.of(new ClassPathResource("scripts/sliding-window-rate-limit.lua"), Long.class);
+
+    private final BasicRateLimitingService localLimits;
+    private final StringRedisTemplate redis;
+    private final String keyPrefix;
+    private final double leaseFraction;
+    private final long leaseTtlMillis;
+    private final long retryIntervalMillis;
+    private final Clock clock;
+
+    private final Cache<String, Lease> leases;
+    // Limits used so far, so a key can be reset in each of them
+    private final Set<Limit> limits = ConcurrentHashMap.newKeySet();
+
+    private volatile long remoteRetryAt;
+
+    private final LongAdder leaseAdmissions = new LongAdder();
+    private final LongAdder remoteCalls = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Autowired
+    public DistributedRateLimitingService(RateLimitProperties properties, BasicRateLimitingService localLimits,
+                                          ObjectProvider<StringRedisTemplate> redisTemplate,
+                                          ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, localLimits,
+                properties.getRedis().isEnabled() ? redisTemplate.getIfAvailable() : null, Clock.systemUTC());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            bindTo(registry);
+        }
+    }
+
+    DistributedRateLimitingService(RateLimitProperties properties, BasicRateLimitingService localLimits,
+                                   StringRedisTemplate redis, Clock clock) {
+        RateLimitProperties.Redis settings = properties.getRedis();
+        this.localLimits = localLimits;
+        this.redis = redis;
+        this.keyPrefix = settings.getKeyPrefix();
+        this.leaseFraction = settings.getLeaseFraction();
+        this.leaseTtlMillis = settings.getLeaseTtl().toMillis();
+        this.retryIntervalMillis = settings.getRetryInterval().toMillis();
+        this.clock = clock;
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxKeys())
+                .expireAfterAccess(settings.getLeaseTtl())
+                .build();
+    }
+
+    public boolean isDistributed() {
+        return redis != null;
+    }
+
+    /**
+     * Counts one request for the key against {@code limit} per sliding {@code window}.
+     * @return true if rate limited (should block), false if allowed
+     */
+    public boolean isRateLimited(String key, int limit, Duration window) {
+        long now = clock.millis();
+        if (!remoteAvailable(now)) {
+            return localLimits.isRateLimited(key, limit, window);
+        }
+        Limit bound = new Limit(limit, window.toMillis());
+        limits.add(bound);
+        Lease lease = leases.get(leaseKey(key, bound), k -> new Lease());
+        if (lease.tryTake(now)) {
+            leaseAdmissions.increment();
+            return false;
+        }
+        synchronized (lease) {
+            // Renewed by another request while this one waited
+            if (lease.tryTake(now)) {
+                leaseAdmissions.increment();
+                return false;
+            }
+            if (now < lease.deniedUntil) {
+                return true;
+            }
+            long granted;
+            try {
+                remoteCalls.increment();
+                Long result = redis.execute(SLIDING_WINDOW, List.of(redisKey(key, bound)),
+                        String.valueOf(limit), String.valueOf(bound.windowMillis()),
+                        String.valueOf(leaseSize(limit)));
+                granted = result != null ? result : 0;
+            } catch (DataAccessException e) {
+                remoteFailed(now, e);
+                return localLimits.isRateLimited(key, limit, window);
+            }
+            if (granted <= 0) {
+                lease.deny(now + Math.min(leaseTtlMillis, Math.max(1, bound.windowMillis() / limit)));
+                return true;
+            }
+            lease.renew(granted - 1, now + leaseTtlMillis);
+            return false;
+        }
+    }
+
+    /**
+     * Requests left for the key; when distributed, those this node may still admit from its lease.
+     */
+    public long getRemainingRequests(String key, int limit, Duration window) {
+        long now = clock.millis();
+        if (!remoteAvailable(now)) {
+            return localLimits.getRemainingRequests(key, limit, window);
+        }
+        Lease lease = leases.getIfPresent(leaseKey(key, new Limit(limit, window.toMillis())));
+        if (lease == null) {
+            return limit;
+        }
+        return now < lease.deniedUntil ? 0 : lease.remaining(now, limit);
+    }
+
+    /**
+     * Time until the key may be asked for again; when distributed, until this node retries Redis.
+     */
+    public Duration getTimeUntilReset(String key, int limit, Duration window) {
+        long now = clock.millis();
+        if (!remoteAvailable(now)) {
+            return localLimits.getTimeUntilReset(key, window);
+        }
+        Lease lease = leases.getIfPresent(leaseKey(key, new Limit(limit, window.toMillis())));
+        return lease != null ? Duration.ofMillis(Math.max(0, lease.deniedUntil - now)) : Duration.ZERO;
+    }
+
+    /**
+     * Forgets the key on this node and in Redis, in every limit used so far.
+     */
+    public void reset(String key) {
+        localLimits.reset(key);
+        List<String> redisKeys = new ArrayList<>();
+        for (Limit bound : limits) {
+            leases.invalidate(leaseKey(key, bound));
+            redisKeys.add(redisKey(key, bound));
+        }
+        if (redisKeys.isEmpty() || !remoteAvailable(clock.millis())) {
+            return;
+        }
+        try {
+            redis.delete(redisKeys);
+        } catch (DataAccessException e) {
+            remoteFailed(clock.millis(), e);
+        }
+    }
+
+    public long getLeaseAdmissions() {
+        return leaseAdmissions.sum();
+    }
+
+    public long getRemoteCalls() {
+        return remoteCalls.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    private void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("iam.rate-limit.admissions", leaseAdmissions, LongAdder::sum)
+                .tag("source", "lease").register(registry);
+        FunctionCounter.builder("iam.rate-limit.remote.calls", remoteCalls, LongAdder::sum).register(registry);
+        FunctionCounter.builder("iam.rate-limit.fallbacks", fallbacks, LongAdder::sum).register(registry);
+    }
+
+    private int leaseSize(int limit) {
+        return Math.max(1, (int) (limit * leaseFraction));
+    }
+
+    private boolean remoteAvailable(long now) {
+        return redis != null && now >= remoteRetryAt;
+    }
+
+    private void remoteFailed(long now, DataAccessException e) {
+        fallbacks.increment();
+        if (now >= remoteRetryAt) {
+            log.warn("Redis unavailable for rate limiting, enforcing per-node limits for {} ms: {}",
+                    retryIntervalMillis, e.getMessage());
+        }
+        remoteRetryAt = now + retryIntervalMillis;
+    }
+
+    private String redisKey(String key, Limit bound) {
+        return keyPrefix + leaseKey(key, bound);
+    }
+
+    private static String leaseKey(String key, Limit bound) {
+        return key + ":" + bound.limit() + "/" + bound.windowMillis();
+    }
+
+    private record Limit(int limit, long windowMillis) {
+    }
+
+    private static final class Lease {
+
+        private final AtomicLong tokens = new AtomicLong();
+        private volatile long expiresAt;
+        private volatile long deniedUntil;
+
+        boolean tryTake(long now) {
+            if (now >= expiresAt) {
+                return false;
+            }
+            long left;
+            do {
+                left = tokens.get();
+                if (left <= 0) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(left, left - 1));
+            return true;
+        }
+
+        // Without a live lease the node does not know, so it reports the whole limit
+        long remaining(long now, int limit) {
+            return now < expiresAt ? Math.max(0, tokens.get()) : limit;
+        }
+
+        void renew(long granted, long expiresAt) {
+            tokens.set(granted);
+            this.expiresAt = expiresAt;
+            deniedUntil = 0;
+        }
+
+        void deny(long until) {
+            tokens.set(0);
+            deniedUntil = until;
+        }
+    }
+}
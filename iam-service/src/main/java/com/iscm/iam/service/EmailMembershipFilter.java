@@ -0,0 +1,285 @@
+package com.iscm.iam.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iscm.iam.repository.UserRepository;
+import com.iscm.iam.security.RevocationEvent;
+import com.iscm.iam.security.RevocationPropagator;
+import com.iscm.iam.util.BloomFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers "is this email registered?" without the database for most emails that are not. A Bloom
+ * filter over every registered email is built at startup from a streaming scan of the users table
+ * and kept current from local inserts, registrations announced by other nodes over the revocation
+ * channel, and a periodic scan of recently updated rows that catches announcements that were lost.
+ * Emails the database has just confirmed absent are held in a short-lived negative cache.
+ * Until the first build completes every lookup goes to the database.
+ *
+ * The filter can briefly miss an email registered on another node, so its rejections are only
+ * trusted where a stale answer is harmless: duplicate checks before an insert, which the unique
+ * constraint backs up. Login and password reset skip the database only on a negative cache hit.
+ */
+@Slf4j
+@Component
+public class EmailMembershipFilter {
+
+    private static final String COUNT_USERS_SQL = "SELECT count(*) FROM users";
+    private static final String SELECT_EMAILS_SQL = "SELECT email FROM users";
+    private static final String SELECT_UPDATED_EMAILS_SQL = "SELECT email FROM users WHERE updated_at >= ?";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RevocationPropagator propagator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.email-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.email-filter.expected-emails:1000000}")
+    private long expectedEmails;
+
+    @Value("${app.email-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${app.email-filter.negative-cache.ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    @Value("${app.email-filter.negative-cache.max-size:100000}")
+    private long negativeMaxSize;
+
+    // Rows updated this long before a catch-up scan started are read again by the next one,
+    // covering clock skew between nodes and transactions that commit late
+    @Value("${app.email-filter.catch-up-overlap-seconds:120}")
+    private long catchUpOverlapSeconds;
+
+    @Value("${app.email-filter.fetch-size:5000}")
+    private int fetchSize;
+
+    // Null until the first build completes
+    private volatile BloomFilter filter;
+    // Set while a rebuild is scanning, so emails recorded meanwhile reach the new filter as well
+    private volatile BloomFilter building;
+    private volatile LocalDateTime lastScanStartedAt;
+
+    private Cache<String, Boolean> confirmedAbsent;
+
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder negativeCacheHits = new LongAdder();
+    private final LongAdder databaseLookups = new LongAdder();
+
+    public EmailMembershipFilter(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                 RevocationPropagator propagator, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.propagator = propagator;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    @PostConstruct
+    void init() {
+        this.confirmedAbsent = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .build();
+        if (meterRegistry != null) {
+            FunctionCounter.builder("iam.email.lookups.avoided", bloomRejections, LongAdder::sum)
+                    .tag("reason", "bloom_filter").register(meterRegistry);
+            FunctionCounter.builder("iam.email.lookups.avoided", negativeCacheHits, LongAdder::sum)
+                    .tag("reason", "negative_cache").register(meterRegistry);
+            FunctionCounter.builder("iam.email.lookups.database", databaseLookups, LongAdder::sum)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns {@code false} only if the database confirmed the email absent within the negative
+     * cache TTL, with no registration of it seen since; {@code true} means the caller must ask the
+     * database, and should report a miss through {@link #recordAbsent}.
+     */
+    public boolean mightExist(String email) {
+        if (!enabled || email == null) {
+            return true;
+        }
+        if (confirmedAbsent.getIfPresent(email) != null) {
+            negativeCacheHits.increment();
+            return false;
+        }
+        databaseLookups.increment();
+        return true;
+    }
+
+    /**
+     * Duplicate check before an insert. A filter rejection is trusted here: if it is stale, the
+     * insert fails on the unique constraint and is reported as a conflict.
+     */
+    public boolean existsByEmail(String email) {
+        if (!enabled || email == null) {
+            return userRepository.existsByEmail(email);
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(email)) {
+            bloomRejections.increment();
+            return false;
+        }
+        if (!mightExist(email)) {
+            return false;
+        }
+        boolean exists = userRepository.existsByEmail(email);
+        if (!exists) {
+            recordAbsent(email);
+        }
+        return exists;
+    }
+
+    public void recordAbsent(String email) {
+        if (enabled && email != null) {
+            confirmedAbsent.put(email, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Called when a user is saved with this email. Recorded again after commit, so a rebuild that
+     * started scanning before the row was visible still ends up containing it, and announced to
+     * the other nodes once committed.
+     */
+    public void recordEmail(String email) {
+        if (!enabled || email == null) {
+            return;
+        }
+        add(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(email);
+                }
+            });
+        }
+        propagator.publishEmailRegistered(email);
+    }
+
+    /**
+     * Learns an email registered on another node without waiting for the next catch-up scan
+     */
+    @EventListener
+    public void onRemoteRevocation(RevocationEvent event) {
+        if (enabled && event.type() == RevocationEvent.Type.EMAIL_REGISTERED) {
+            add(event.email());
+        }
+    }
+
+    /**
+     * Builds a new filter from all registered emails and swaps it in. Run at startup and
+     * periodically, which also drops emails of deleted users and resizes the filter as it grows.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.email-filter.rebuild-interval-ms:21600000}",
+            initialDelayString = "${app.email-filter.rebuild-interval-ms:21600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Long users = jdbcTemplate.queryForObject(COUNT_USERS_SQL, Long.class);
+            // Leave room to grow until the next rebuild
+            BloomFilter rebuilt = BloomFilter.create(Math.max(expectedEmails, (users == null ? 0 : users) * 2),
+                    falsePositiveRate);
+            building = rebuilt;
+            LocalDateTime scanStartedAt = LocalDateTime.now();
+            scan(SELECT_EMAILS_SQL, rebuilt);
+            filter = rebuilt;
+            building = null;
+            lastScanStartedAt = scanStartedAt;
+            log.info("Built email membership filter over {} emails ({} bytes)",
+                    rebuilt.getInsertions(), rebuilt.getMemoryBytes());
+        } catch (DataAccessException e) {
+            building = null;
+            log.warn("Failed to build email membership filter, lookups keep using the previous one: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Adds emails of users created or renamed since the last scan, including those saved by other
+     * nodes, and drops any negative cache entries they contradict.
+     */
+    @Scheduled(fixedDelayString = "${app.email-filter.catch-up-interval-ms:15000}")
+    @Transactional(readOnly = true)
+    public void catchUp() {
+        LocalDateTime since = lastScanStartedAt;
+        BloomFilter current = filter;
+        if (!enabled || current == null || since == null) {
+            return;
+        }
+        try {
+            LocalDateTime scanStartedAt = LocalDateTime.now();
+            scan(SELECT_UPDATED_EMAILS_SQL, current, Timestamp.valueOf(since.minusSeconds(catchUpOverlapSeconds)));
+            lastScanStartedAt = scanStartedAt;
+        } catch (DataAccessException e) {
+            log.warn("Email membership catch-up failed, will retry on the next run: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public long getAvoidedLookups() {
+        return bloomRejections.sum() + negativeCacheHits.sum();
+    }
+
+    public long getDatabaseLookups() {
+        return databaseLookups.sum();
+    }
+
+    private void scan(String sql, BloomFilter target, Object... args) {
+        // Streams within the read-only transaction instead of loading every row at once
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, resultSet -> {
+            String email = resultSet.getString(1);
+            target.put(email);
+            confirmedAbsent.invalidate(email);
+        });
+    }
+
+    private void add(String email) {
+        // Read the rebuild target first: once it is cleared, the swapped-in filter is already visible
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.put(email);
+        }
+        if (current != null) {
+            current.put(email);
+        }
+        confirmedAbsent.invalidate(email);
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -23,14 +24,18 @@ public class PasswordResetService {
     private final PasswordResetTokenRepository tokenRepository;
     private final EmailService emailService;
     private final FraudDetectionService fraudDetectionService;
+    private final EmailMembershipFilter emailMembershipFilter;
 
     @Value("${app.password.reset.token.expiration.hours:1}")
     private int tokenExpirationHours;
 
     @Transactional
     public void initiatePasswordReset(String email, String ipAddress, String userAgent) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new IllegalArgumentException("If email exists, reset instructions will be sent"));
+        User user = (emailMembershipFilter.mightExist(email) ? userRepository.findByEmail(email) : Optional.<User>empty())
+                .orElseThrow(() -> {
+                    emailMembershipFilter.recordAbsent(email);
+                    return new IllegalArgumentException("If email exists, reset instructions will be sent");
+                });
 
         // Check for suspicious activity
         if (fraudDetectionService.isSuspiciousResetAttempt(user.getId(), ipAddress, userAgent)) {
@@ -0,0 +1,211 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.model.Permission;
+import com.iscm.iam.model.Role;
+import com.iscm.iam.repository.RoleRepository;
+import com.iscm.iam.security.PermissionIndex;
+import com.iscm.iam.security.PermissionSet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process copy of the role -> permission graph used to build authorities without a database
+ * read. Each role's authorities (its ROLE_ authority followed by its permissions) are built once
+ * per snapshot and shared, with one instance per permission code. The snapshot is immutable and
+ * swapped atomically; it is reloaded when the database authorization_version counter moves past
+ * the version it was built from. Roles are global, so its size does not grow with tenants.
+ * It also holds each role's permissions as a bitset over the stable permission index, from
+ * which {@link PermissionSet}s are assembled with a few word ORs.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RolePermissionSnapshot {
+
+    private final RoleRepository roleRepository;
+
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.stateless-auth.snapshot-refresh-interval-ms:30000}")
+    public void refreshIfStale() {
+        try {
+            long databaseVersion = roleRepository.findAuthorizationVersion().orElse(0L);
+            if (databaseVersion != current.version) {
+                refresh();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to check authorization version: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Makes sure the snapshot is at least as new as the version a token was issued under.
+     * Only a token minted after a role/permission change triggers a reload.
+     *
+     * @return false if the snapshot could not be brought up to the required version
+     */
+    public boolean ensureVersion(long requiredVersion) {
+        if (requiredVersion <= current.version) {
+            return true;
+        }
+        synchronized (this) {
+            if (requiredVersion > current.version) {
+                refresh();
+            }
+            return requiredVersion <= current.version;
+        }
+    }
+
+    public boolean isLoaded() {
+        return current != Snapshot.EMPTY;
+    }
+
+    public long getVersion() {
+        return current.version;
+    }
+
+    /**
+     * Resolves role names to ROLE_ and permission authorities. A single known role returns its
+     * shared immutable list; several roles are merged into one new set.
+     */
+    public Collection<GrantedAuthority> getAuthorities(Collection<String> roleNames) {
+        Map<String, List<GrantedAuthority>> authoritiesByRole = current.authoritiesByRole;
+        if (roleNames.size() == 1) {
+            String roleName = roleNames.iterator().next();
+            List<GrantedAuthority> authorities = authoritiesByRole.get(roleName);
+            return authorities != null ? authorities : List.of(new SimpleGrantedAuthority("ROLE_" + roleName));
+        }
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+        for (String roleName : roleNames) {
+            List<GrantedAuthority> roleAuthorities = authoritiesByRole.get(roleName);
+            if (roleAuthorities != null) {
+                authorities.addAll(roleAuthorities);
+            } else {
+                // Role created after this snapshot: its permissions arrive with the next reload
+                authorities.add(new SimpleGrantedAuthority("ROLE_" + roleName));
+            }
+        }
+        return authorities;
+    }
+
+    public PermissionIndex getPermissionIndex() {
+        return current.permissionIndex;
+    }
+
+    public PermissionSet getPermissionSet(Collection<String> roleNames) {
+        Snapshot snapshot = current;
+        long[] bits = new long[snapshot.wordCount()];
+        List<GrantedAuthority> roleAuthorities = new ArrayList<>(roleNames.size());
+        for (String roleName : roleNames) {
+            roleAuthorities.add(roleAuthority(snapshot, roleName));
+            long[] roleBits = snapshot.bitsByRole.get(roleName);
+            if (roleBits != null) {
+                for (int i = 0; i < roleBits.length; i++) {
+                    bits[i] |= roleBits[i];
+                }
+            }
+        }
+        return new PermissionSet(roleAuthorities, bits, snapshot.permissionIndex);
+    }
+
+    /**
+     * Re-expresses authorities loaded elsewhere (e.g. UserDetails) as a permission set.
+     * Codes missing from the index are dropped, as no role of this snapshot grants them.
+     */
+    public PermissionSet toPermissionSet(Collection<? extends GrantedAuthority> authorities) {
+        Snapshot snapshot = current;
+        long[] bits = new long[snapshot.wordCount()];
+        List<GrantedAuthority> roleAuthorities = new ArrayList<>();
+        for (GrantedAuthority authority : authorities) {
+            String code = authority.getAuthority();
+            if (code.startsWith("ROLE_")) {
+                roleAuthorities.add(authority);
+                continue;
+            }
+            int position = snapshot.permissionIndex.indexOf(code);
+            if (position >= 0) {
+                bits[position >>> 6] |= 1L << position;
+            }
+        }
+        return new PermissionSet(roleAuthorities, bits, snapshot.permissionIndex);
+    }
+
+    private static GrantedAuthority roleAuthority(Snapshot snapshot, String roleName) {
+        List<GrantedAuthority> authorities = snapshot.authoritiesByRole.get(roleName);
+        // The role authority is always first in the pre-built list
+        return authorities != null ? authorities.get(0) : new SimpleGrantedAuthority("ROLE_" + roleName);
+    }
+
+    public synchronized void refresh() {
+        try {
+            // Read the version first so a concurrent change is picked up by the next check
+            long version = roleRepository.findAuthorizationVersion().orElse(0L);
+            List<Role> roles = roleRepository.findAllWithPermissions();
+
+            Map<String, Integer> indexByCode = new HashMap<>();
+            for (Role role : roles) {
+                for (Permission permission : role.getPermissions()) {
+                    if (permission.getBitIndex() != null) {
+                        indexByCode.put(permission.getCode(), permission.getBitIndex());
+                    }
+                }
+            }
+            PermissionIndex permissionIndex = new PermissionIndex(indexByCode);
+            int wordCount = (permissionIndex.size() + 63) >>> 6;
+
+            Map<String, GrantedAuthority> authorityByCode = new HashMap<>();
+            Map<String, List<GrantedAuthority>> authoritiesByRole = new HashMap<>();
+            Map<String, long[]> bitsByRole = new HashMap<>();
+            for (Role role : roles) {
+                List<GrantedAuthority> authorities = new ArrayList<>(role.getPermissions().size() + 1);
+                long[] bits = new long[wordCount];
+                authorities.add(new SimpleGrantedAuthority("ROLE_" + role.getName()));
+                for (Permission permission : role.getPermissions()) {
+                    int position = permissionIndex.indexOf(permission.getCode());
+                    if (position >= 0) {
+                        bits[position >>> 6] |= 1L << position;
+                        authorities.add(permissionIndex.authority(position));
+                    } else {
+                        authorities.add(authorityByCode.computeIfAbsent(permission.getCode(), SimpleGrantedAuthority::new));
+                    }
+                }
+                authoritiesByRole.put(role.getName(), List.copyOf(authorities));
+                bitsByRole.put(role.getName(), bits);
+            }
+
+            current = new Snapshot(version, Map.copyOf(authoritiesByRole), Map.copyOf(bitsByRole), permissionIndex);
+            log.info("Loaded role/permission snapshot version {} with {} roles", version, roles.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to load role/permission snapshot: {}", e.getMessage());
+        }
+    }
+
+    private record Snapshot(long version, Map<String, List<GrantedAuthority>> authoritiesByRole,
+                            Map<String, long[]> bitsByRole, PermissionIndex permissionIndex) {
+        static final Snapshot EMPTY = new Snapshot(-1L, Map.of(), Map.of(), PermissionIndex.EMPTY);
+
+        int wordCount() {
+            return (permissionIndex.size() + 63) >>> 6;
+        }
+    }
+}
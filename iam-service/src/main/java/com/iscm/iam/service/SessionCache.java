@@ -0,0 +1,143 @@
+package com.iscm.iam.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iscm.iam.model.UserSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of sessions keyed by refresh token digest, with secondary indexes by session id
+ * and user id so that revoking one session or all of a user's sessions only touches those entries.
+ * Entries are immutable snapshots that only locate the session row; whether it is still current
+ * is always read from the database. Entries expire with the session, or after the TTL.
+ */
+@Component
+public class SessionCache {
+
+    @Value("${app.session.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.session.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, CachedSession> sessionsByDigest;
+
+    private final ConcurrentHashMap<UUID, String> digestBySessionId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Set<String>> digestsByUserId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        this.sessionsByDigest = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new SessionExpiry())
+                // Runs on the calling thread so the indexes never point at entries long gone
+                .executor(Runnable::run)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, sessionsByDigest, "user.sessions");
+        }
+    }
+
+    public CachedSession get(String digest) {
+        return sessionsByDigest.getIfPresent(digest);
+    }
+
+    public void put(String digest, UserSession session) {
+        CachedSession cached = CachedSession.of(session);
+        digestBySessionId.put(cached.id(), digest);
+        digestsByUserId.computeIfAbsent(cached.userId(), id -> ConcurrentHashMap.newKeySet()).add(digest);
+        sessionsByDigest.put(digest, cached);
+    }
+
+    public void invalidate(String digest) {
+        sessionsByDigest.invalidate(digest);
+    }
+
+    public void invalidateSession(UUID sessionId) {
+        String digest = digestBySessionId.get(sessionId);
+        if (digest != null) {
+            sessionsByDigest.invalidate(digest);
+        }
+    }
+
+    public void invalidateUser(UUID userId) {
+        Set<String> digests = digestsByUserId.get(userId);
+        if (digests != null) {
+            sessionsByDigest.invalidateAll(Set.copyOf(digests));
+        }
+    }
+
+    public void cleanUp() {
+        sessionsByDigest.cleanUp();
+    }
+
+    public long size() {
+        return sessionsByDigest.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return sessionsByDigest.stats();
+    }
+
+    private void onRemoval(String digest, CachedSession session, RemovalCause cause) {
+        // A replaced entry keeps its key, so the indexes still hold
+        if (cause == RemovalCause.REPLACED || digest == null || session == null) {
+            return;
+        }
+        digestBySessionId.remove(session.id(), digest);
+        digestsByUserId.computeIfPresent(session.userId(), (id, digests) -> {
+            digests.remove(digest);
+            return digests.isEmpty() ? null : digests;
+        });
+    }
+
+    /**
+     * The primary key of a session row, (id, expires_at), plus its owner for the user index.
+     */
+    public record CachedSession(UUID id, UUID userId, LocalDateTime expiresAt) {
+
+        // Reading the id of the lazy user proxy does not initialise it
+        static CachedSession of(UserSession session) {
+            return new CachedSession(session.getId(), session.getUser().getId(), session.getExpiresAt());
+        }
+    }
+
+    private class SessionExpiry implements Expiry<String, CachedSession> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedSession session, long currentTime) {
+            long untilExpiry = LocalDateTime.now().until(session.expiresAt(), ChronoUnit.SECONDS);
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Math.min(untilExpiry, ttlSeconds)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedSession session, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, session, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedSession session, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
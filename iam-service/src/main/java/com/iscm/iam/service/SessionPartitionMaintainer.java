@@ -0,0 +1,58 @@
+package com.iscm.iam.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Keeps the daily partitions of user_sessions ahead of the longest session lifetime and
+ * enforces retention by dropping whole partitions, which costs the same at any table size.
+ * The DDL lives in the create/drop_user_sessions_partitions database functions.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionPartitionMaintainer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.session.partitions.enabled:true}")
+    private boolean enabled;
+
+    // Must exceed the session lifetime, or new sessions land in the default partition
+    @Value("${app.session.partitions.premake-days:14}")
+    private int premakeDays;
+
+    @Value("${app.session.partitions.retention-days:30}")
+    private int retentionDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.session.partitions.cron:0 15 * * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        // expires_at holds server-local timestamps, so partition days follow the server zone too
+        LocalDate today = LocalDate.now();
+        try {
+            Integer created = jdbcTemplate.queryForObject("SELECT create_user_sessions_partitions(?, ?)",
+                    Integer.class, Date.valueOf(today), premakeDays + 1);
+            Integer dropped = jdbcTemplate.queryForObject("SELECT drop_user_sessions_partitions(?)",
+                    Integer.class, Date.valueOf(today.minusDays(retentionDays)));
+            if (created != null && created > 0 || dropped != null && dropped > 0) {
+                log.info("Session partition maintenance: created {}, dropped {}", created, dropped);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Session partition maintenance failed, will retry on the next run: {}", e.getMessage());
+        }
+    }
+}
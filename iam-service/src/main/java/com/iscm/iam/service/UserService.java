@@ -1,5 +1,8 @@
 package com.iscm.iam.service;
 
+import com.iscm.iam.cache.CacheService;
+import com.iscm.iam.cache.CachedUser;
+import com.iscm.iam.cache.SingleFlight;
 import com.iscm.iam.dto.UserUpdateRequest;
 import com.iscm.iam.exception.UserDeletionException;
 import com.iscm.iam.model.Role;
@@ -17,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -32,7 +36,9 @@ import java.util.stream.Collectors;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final String USER_DETAILS_BY_EMAIL = "userDetailsByEmail";
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
@@ -41,25 +47,106 @@ public class UserService implements UserDetailsService {
     private final OAuthAccountRepository oauthAccountRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final UserSessionRepository userSessionRepository;
+    private final RolePermissionSnapshot rolePermissionSnapshot;
+    private final CacheService cacheService;
+    private final EmailMembershipFilter emailMembershipFilter;
 
+    /**
+     * Concurrent lookups of the same email share one query. Each caller gets its own copy, since
+     * the authentication provider erases the password of the details it is given.
+     */
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmailWithAllDetails(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        SingleFlight<String, UserDetails> emailLoads = cacheService.getSingleFlight(USER_DETAILS_BY_EMAIL);
+        UserDetails loaded = emailLoads.load(email, key -> buildUserDetailsOptimized(
+                userRepository.findByEmailWithAllDetails(key)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + key))));
 
-        return buildUserDetailsOptimized(user);
+        return org.springframework.security.core.userdetails.User.withUserDetails(loaded).build();
+    }
+
+    /**
+     * Called by the authentication provider after a successful login whose stored hash uses an
+     * outdated algorithm or cost. Writes the column directly, so it also works when the user was
+     * loaded read-only.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        userRepository.findByEmail(userDetails.getUsername()).ifPresent(user -> upgradePasswordHash(user, newPassword));
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
+
+    @Transactional
+    public void upgradePasswordHash(User user, String newPasswordHash) {
+        userRepository.updatePasswordHash(user.getId(), newPasswordHash);
+        log.info("Upgraded password hash for user: {}", user.getId());
     }
 
+    /**
+     * Resolves the user behind an access token. Once the role/permission snapshot has loaded, this
+     * is served from the user cache and only a miss reads the database. The returned details carry
+     * no password, since token authentication never checks one.
+     */
     @Transactional(readOnly = true)
     public UserDetails loadUserByUserId(String userId) {
-        User user = userRepository.findByIdWithAllDetails(UUID.fromString(userId))
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+        UUID id = UUID.fromString(userId);
+        if (!rolePermissionSnapshot.isLoaded()) {
+            return buildUserDetailsOptimized(findForToken(id));
+        }
+
+        CachedUser user = cacheService.getUser(id, () -> toCachedUser(findForToken(id)));
+        return new org.springframework.security.core.userdetails.User(
+                user.email(),
+                "",
+                user.active(),
+                true, // account non-expired
+                true, // credentials non-expired
+                user.isAccountNonLocked(),
+                rolePermissionSnapshot.getAuthorities(user.roles())
+        );
+    }
 
-        return buildUserDetailsOptimized(user);
+    private User findForToken(UUID id) {
+        return userRepository.findByIdWithAllDetails(id)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
+    }
+
+    private static CachedUser toCachedUser(User user) {
+        return new CachedUser(
+                user.getId(),
+                user.getEmail(),
+                user.getTenantId(),
+                Boolean.TRUE.equals(user.getIsActive()),
+                user.getAccountLockedUntil(),
+                user.getUserRoles().stream()
+                        .map(userRole -> userRole.getRole().getName())
+                        .toList());
     }
 
     private UserDetails buildUserDetailsOptimized(User user) {
+        Collection<GrantedAuthority> authorities = rolePermissionSnapshot.isLoaded()
+                ? rolePermissionSnapshot.getAuthorities(user.getUserRoles().stream()
+                        .map(userRole -> userRole.getRole().getName())
+                        .toList())
+                : loadAuthorities(user);
+
+        return new org.springframework.security.core.userdetails.User(
+                user.getEmail(),
+                user.getPasswordHash(),
+                user.getIsActive(),
+                true, // account non-expired
+                true, // credentials non-expired
+                user.isAccountNonLocked(),
+                authorities
+        );
+    }
+
+    // Only used until the role/permission snapshot has loaded
+    private Collection<GrantedAuthority> loadAuthorities(User user) {
         Collection<GrantedAuthority> authorities = new java.util.ArrayList<>();
 
         // Extract role IDs to fetch permissions separately (avoid MultipleBagFetchException)
@@ -89,16 +176,7 @@ public class UserService implements UserDetailsService {
                 }
             });
         }
-
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPasswordHash(),
-                user.getIsActive(),
-                true, // account non-expired
-                true, // credentials non-expired
-                user.isAccountNonLocked(),
-                authorities
-        );
+        return authorities;
     }
 
     @Transactional
@@ -112,6 +190,7 @@ public class UserService implements UserDetailsService {
         userRole.setTenantId(user.getTenantId());
         user.getUserRoles().add(userRole);
         userRepository.save(user);
+        cacheService.evictUser(user.getId());
     }
 
     @Transactional
@@ -134,7 +213,7 @@ public class UserService implements UserDetailsService {
     }
 
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return emailMembershipFilter.existsByEmail(email);
     }
 
     @Transactional
@@ -146,6 +225,7 @@ public class UserService implements UserDetailsService {
                 throw new RuntimeException("Email already exists: " + updateRequest.getEmail());
             }
             user.setEmail(updateRequest.getEmail());
+            emailMembershipFilter.recordEmail(updateRequest.getEmail());
         }
 
         if (updateRequest.getFirstName() != null) {
@@ -160,6 +240,7 @@ public class UserService implements UserDetailsService {
             user.setPhone(updateRequest.getPhoneNumber());
         }
 
+        cacheService.evictUser(user.getId());
         return userRepository.save(user);
     }
 
@@ -167,6 +248,7 @@ public class UserService implements UserDetailsService {
     public void deleteUser(UUID userId) {
         User user = findById(userId);
         userRepository.delete(user);
+        cacheService.evictUser(userId);
     }
 
     @Transactional
@@ -179,6 +261,7 @@ public class UserService implements UserDetailsService {
                 throw new RuntimeException("Email already exists: " + updateRequest.getEmail());
             }
             user.setEmail(updateRequest.getEmail());
+            emailMembershipFilter.recordEmail(updateRequest.getEmail());
         }
 
         // Update first name if provided
@@ -196,6 +279,7 @@ public class UserService implements UserDetailsService {
             user.setPhone(updateRequest.getPhoneNumber());
         }
 
+        cacheService.evictUser(user.getId());
         return userRepository.save(user);
     }
 
@@ -231,6 +315,7 @@ public class UserService implements UserDetailsService {
             // Finally delete the user
             log.debug("Deleting user: {}", userId);
             userRepository.delete(user);
+            cacheService.evictUser(userId);
 
             log.info("Successfully deleted user and all related data for: {}", email);
 
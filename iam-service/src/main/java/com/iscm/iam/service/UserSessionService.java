@@ -1,9 +1,12 @@
 package com.iscm.iam.service;
 
 // import com.iscm.iam.cache.CacheService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.iscm.iam.model.User;
 import com.iscm.iam.model.UserSession;
 import com.iscm.iam.repository.UserSessionRepository;
+import com.iscm.iam.security.JwtUtil;
+import com.iscm.iam.security.RefreshTokenHasher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,9 +18,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -26,16 +30,18 @@ public class UserSessionService {
 
     private final UserSessionRepository sessionRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RefreshTokenHasher refreshTokenHasher;
+    private final JwtUtil jwtUtil;
+    private final SessionCache sessionCache;
+    private final SessionPartitionMaintainer partitionMaintainer;
     // private final CacheService cacheService;
 
     @Value("${app.session.max-concurrent-sessions:5}")
     private int maxConcurrentSessions;
 
-    @Value("${app.session.cleanup.threshold:100}")
-    private int cleanupThreshold;
-
-    // In-memory cache for frequently accessed sessions
-    private final ConcurrentHashMap<String, UserSession> sessionCache = new ConcurrentHashMap<>();
+    // Sessions created before the digest scheme hold BCrypt hashes; they are upgraded on first use
+    @Value("${app.session.legacy-bcrypt-fallback.enabled:true}")
+    private boolean legacyBcryptFallbackEnabled;
 
     // Session statistics
     private volatile long totalSessionsCreated = 0;
@@ -45,43 +51,45 @@ public class UserSessionService {
     public UserSession createSession(User user, String refreshToken, String userAgent, String ipAddress) {
         log.debug("Creating session for user: {} from IP: {}", user.getId(), ipAddress);
 
-        // Check concurrent session limit
-        List<UserSession> activeSessions = getActiveSessions(user.getId());
-        if (activeSessions.size() >= maxConcurrentSessions) {
-            // Revoke oldest session
-            UserSession oldestSession = activeSessions.get(0);
-            revokeSession(oldestSession.getId().toString());
-            log.info("Revoked oldest session for user {} due to concurrent session limit", user.getId());
-        }
-
-        // Hash the refresh token before storing
-        String refreshTokenHash = passwordEncoder.encode(refreshToken);
+        // Store a keyed digest of the refresh token so it can be looked up by index
+        String refreshTokenHash = refreshTokenHasher.hash(refreshToken);
+        // Truncated to the database precision so the cached expiry matches the stored key
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
 
         UserSession session = new UserSession();
+        session.setId(UUID.randomUUID());
         session.setUser(user);
         session.setRefreshTokenHash(refreshTokenHash);
         session.setUserAgent(userAgent);
         session.setIpAddress(ipAddress);
-        session.setCreatedAt(LocalDateTime.now());
-        session.setExpiresAt(LocalDateTime.now().plusDays(7)); // 7 days expiration
-        // Note: lastAccessedAt field removed - using createdAt instead
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        session.setExpiresAt(now.plusDays(7)); // 7 days expiration
         session.setRevoked(false);
-
-        UserSession savedSession = sessionRepository.save(session);
+        session.setVersion(0);
+
+        // Insert and revoke the oldest sessions beyond the concurrent limit in a single call
+        List<UUID> revokedSessionIds = sessionRepository.createSessionWithinLimit(
+                session.getId(), user.getId(), refreshTokenHash, userAgent, ipAddress,
+                session.getExpiresAt(), now, maxConcurrentSessions);
+        revokedSessionIds.forEach(sessionCache::invalidateSession);
+        if (!revokedSessionIds.isEmpty()) {
+            log.info("Revoked {} oldest session(s) for user {} due to concurrent session limit",
+                    revokedSessionIds.size(), user.getId());
+        }
 
         // Cache the session
-        String cacheKey = generateSessionKey(refreshToken);
-        sessionCache.put(cacheKey, savedSession);
+        sessionCache.put(refreshTokenHash, session);
 
         // Cache active session info
-        // cacheService.cacheActiveSession(user.getId(), savedSession.getId().toString(), ipAddress);
+        // cacheService.cacheActiveSession(user.getId(), session.getId().toString(), ipAddress);
 
         // Update statistics
         totalSessionsCreated++;
-        activeSessionsCount++;
+        activeSessionsCount += 1 - revokedSessionIds.size();
 
-        log.debug("Session created successfully: {} for user: {}", savedSession.getId(), user.getId());
-        return savedSession;
+        log.debug("Session created successfully: {} for user: {}", session.getId(), user.getId());
+        return session;
     }
 
     @Transactional
@@ -89,52 +97,48 @@ public class UserSessionService {
     public UserSession validateRefreshToken(String refreshToken) {
         log.debug("Validating refresh token");
 
-        // First check in-memory cache
-        String cacheKey = generateSessionKey(refreshToken);
-        UserSession cachedSession = sessionCache.get(cacheKey);
-        if (cachedSession != null && isSessionValid(cachedSession)) {
-            return cachedSession;
+        // The cache only locates the row; revocation and rotation are always read from the database
+        String refreshTokenHash = refreshTokenHasher.hash(refreshToken);
+        SessionCache.CachedSession cachedSession = sessionCache.get(refreshTokenHash);
+        if (cachedSession != null) {
+            Optional<UserSession> current = sessionRepository.findValidSessionByKey(
+                    cachedSession.id(), cachedSession.expiresAt(), refreshTokenHash, LocalDateTime.now());
+            if (current.isPresent()) {
+                return current.get();
+            }
+            sessionCache.invalidate(refreshTokenHash);
         }
 
-        // OPTIMIZED: Use efficient query to get only active sessions
-        // This is much better than full table scan, but we still need to check password matches
-        var activeSessions = sessionRepository.findByUserIdAndRevokedFalse(null);
-        LocalDateTime now = LocalDateTime.now();
-
-        for (UserSession session : activeSessions) {
-            if (session.getExpiresAt().isAfter(now) &&
-                passwordEncoder.matches(refreshToken, session.getRefreshTokenHash())) {
-                // Cache the found session
-                sessionCache.put(cacheKey, session);
-                return session;
-            }
+        Optional<UserSession> found = findValidSession(refreshToken, refreshTokenHash);
+        if (found.isEmpty()) {
+            revokeReplayedSession(refreshTokenHash);
+            throw new SecurityException("Invalid or expired refresh token");
         }
+        UserSession session = found.get();
 
-        throw new SecurityException("Invalid or expired refresh token");
+        // Cache the found session
+        sessionCache.put(refreshTokenHash, session);
+        return session;
     }
 
     @Transactional
     public UserSession findSessionByRefreshToken(String refreshToken) {
-        // OPTIMIZED: Use efficient query to get only active sessions
-        var activeSessions = sessionRepository.findByUserIdAndRevokedFalse(null);
-        LocalDateTime now = LocalDateTime.now();
-
-        for (UserSession session : activeSessions) {
-            if (session.getExpiresAt().isAfter(now) &&
-                passwordEncoder.matches(refreshToken, session.getRefreshTokenHash())) {
-                return session;
-            }
-        }
-
-        return null; // Return null instead of throwing exception for logout operations
+        return findValidSession(refreshToken, refreshTokenHasher.hash(refreshToken))
+                .orElse(null); // Return null instead of throwing exception for logout operations
     }
 
     @Transactional
     public void updateSession(UserSession session, String newRefreshToken) {
-        String newRefreshTokenHash = passwordEncoder.encode(newRefreshToken);
+        // The old refresh token must stop resolving from the cache as well
+        sessionCache.invalidate(session.getRefreshTokenHash());
+        String newRefreshTokenHash = refreshTokenHasher.hash(newRefreshToken);
+        if (!refreshTokenHasher.isLegacyHash(session.getRefreshTokenHash())) {
+            session.setPreviousRefreshTokenHash(session.getRefreshTokenHash());
+        }
         session.setRefreshTokenHash(newRefreshTokenHash);
-        session.setExpiresAt(LocalDateTime.now().plusDays(7));
-        sessionRepository.save(session);
+        session.setExpiresAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS).plusDays(7));
+        UserSession savedSession = sessionRepository.save(session);
+        sessionCache.put(newRefreshTokenHash, savedSession);
     }
 
     @Transactional
@@ -143,6 +147,7 @@ public class UserSessionService {
             UserSession session = validateRefreshToken(refreshToken);
             session.setRevoked(true);
             sessionRepository.save(session);
+            sessionCache.invalidateSession(session.getId());
         } catch (SecurityException ex) {
             log.warn("Attempt to revoke invalid refresh token");
         }
@@ -150,17 +155,17 @@ public class UserSessionService {
 
     @Transactional
     public void revokeAllUserSessionsLegacy(UUID userId) {
-        sessionRepository.revokeAllUserSessions(userId);
+        sessionRepository.revokeAllUserSessions(userId, LocalDateTime.now());
+        sessionCache.invalidateUser(userId);
     }
 
-    // @Scheduled(cron = "0 0 2 * * ?") // DISABLED - Run daily at 2 AM
-    @Transactional
+    // Partition maintenance runs on its own schedule; this is the on-demand entry point
     public void cleanupExpiredSessions() {
-        LocalDateTime cutoff = LocalDateTime.now().minusDays(30); // Keep logs for 30 days
-        sessionRepository.deleteExpiredSessions(cutoff);
+        // Expired sessions are dropped a partition at a time after the retention period
+        partitionMaintainer.maintainPartitions();
 
-        // Clear in-memory cache of expired sessions
-        sessionCache.entrySet().removeIf(entry -> !isSessionValid(entry.getValue()));
+        // Expired sessions leave the in-memory cache on their own; drop them eagerly here
+        sessionCache.cleanUp();
 
         // Update active sessions count
         updateActiveSessionsCount();
@@ -178,42 +183,82 @@ public class UserSessionService {
     @Transactional
     // @CacheEvict(value = {"sessions", "activeSessions"}, allEntries = true)
     public void revokeSession(UUID sessionId) {
-        sessionRepository.revokeSession(sessionId);
-        // Remove from in-memory cache
-        sessionCache.entrySet().removeIf(entry -> entry.getValue().getId().equals(sessionId));
+        sessionRepository.revokeSession(sessionId, LocalDateTime.now());
+        sessionCache.invalidateSession(sessionId);
         activeSessionsCount--;
     }
 
     @Transactional
     // @CacheEvict(value = {"sessions", "activeSessions"}, key = "#userId")
     public void revokeAllUserSessions(UUID userId) {
-        sessionRepository.revokeAllUserSessions(userId);
-        // Remove from in-memory cache
-        sessionCache.entrySet().removeIf(entry -> entry.getValue().getUser().getId().equals(userId));
+        sessionRepository.revokeAllUserSessions(userId, LocalDateTime.now());
+        sessionCache.invalidateUser(userId);
         // cacheService.evictActiveSession(userId);
         updateActiveSessionsCount();
     }
 
-    // Note: updateLastAccessed method removed since UserSession doesn't have lastAccessedAt field
-    // Can be re-added if the field is added to the entity in the future
+    // Session last access is recorded per request by JwtAuthenticationFilter into ActivityWriteBehindBuffer
 
     public SessionStatistics getSessionStatistics() {
+        CacheStats cacheStats = sessionCache.stats();
         return SessionStatistics.builder()
                 .totalSessionsCreated(totalSessionsCreated)
                 .activeSessionsCount(activeSessionsCount)
                 .maxConcurrentSessions(maxConcurrentSessions)
-                .inMemoryCacheSize(sessionCache.size())
+                .inMemoryCacheSize((int) sessionCache.size())
+                .cacheHitRate(cacheStats.hitRate())
+                .cacheEvictionCount(cacheStats.evictionCount())
                 .build();
     }
 
     // ========== Helper Methods ==========
 
-    private String generateSessionKey(String refreshToken) {
-        return "session:" + refreshToken.hashCode();
+    private Optional<UserSession> findValidSession(String refreshToken, String refreshTokenHash) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<UserSession> session = sessionRepository.findByRefreshTokenHashAndValid(refreshTokenHash, now);
+
+        if (session.isPresent() || !legacyBcryptFallbackEnabled) {
+            return session;
+        }
+        return findLegacySession(refreshToken, now);
     }
 
-    private boolean isSessionValid(UserSession session) {
-        return !session.getRevoked() && session.getExpiresAt().isAfter(LocalDateTime.now());
+    /**
+     * Reuse detection: a token that was already rotated out is being presented again, so either
+     * the client or someone holding a copy of it has the current token. The session is revoked,
+     * which ends the rotation chain for both.
+     */
+    private void revokeReplayedSession(String refreshTokenHash) {
+        List<UUID> revoked = sessionRepository.revokeByPreviousRefreshTokenHash(refreshTokenHash, LocalDateTime.now());
+        for (UUID sessionId : revoked) {
+            sessionCache.invalidateSession(sessionId);
+            log.warn("Rotated-out refresh token replayed, revoked session: {}", sessionId);
+        }
+    }
+
+    /**
+     * Fallback for sessions whose refresh token is still stored as a BCrypt hash. The refresh
+     * token carries the user id, so only that user's active sessions are checked, and a match
+     * is rewritten to the digest form so the next lookup takes the indexed path.
+     */
+    private Optional<UserSession> findLegacySession(String refreshToken, LocalDateTime now) {
+        UUID userId;
+        try {
+            userId = UUID.fromString(jwtUtil.getUserIdFromRefreshToken(refreshToken));
+        } catch (Exception e) {
+            log.debug("Refresh token could not be parsed for legacy session lookup: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        for (UserSession session : sessionRepository.findActiveSessionsByUser(userId, now)) {
+            if (refreshTokenHasher.isLegacyHash(session.getRefreshTokenHash()) &&
+                passwordEncoder.matches(refreshToken, session.getRefreshTokenHash())) {
+                session.setRefreshTokenHash(refreshTokenHasher.hash(refreshToken));
+                log.info("Upgraded legacy refresh token hash for session: {}", session.getId());
+                return Optional.of(sessionRepository.save(session));
+            }
+        }
+        return Optional.empty();
     }
 
     private void updateActiveSessionsCount() {
@@ -230,12 +275,8 @@ public class UserSessionService {
     // @Scheduled(fixedRate = 300000) // DISABLED - Every 5 minutes
     public void performBatchCleanup() {
         try {
-            // Clean up in-memory cache if it gets too large
-            if (sessionCache.size() > cleanupThreshold) {
-                // Remove least recently used entries (simplified)
-                sessionCache.entrySet().removeIf(entry -> !isSessionValid(entry.getValue()));
-                log.debug("Cleaned up in-memory session cache. Size: {}", sessionCache.size());
-            }
+            // The in-memory cache is size-bounded; only flush pending expirations
+            sessionCache.cleanUp();
 
             // Update statistics
             updateActiveSessionsCount();
@@ -254,5 +295,7 @@ public class UserSessionService {
         private long activeSessionsCount;
         private int maxConcurrentSessions;
         private int inMemoryCacheSize;
+        private double cacheHitRate;
+        private long cacheEvictionCount;
     }
 }
\ No newline at end of file
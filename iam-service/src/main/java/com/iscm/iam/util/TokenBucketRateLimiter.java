@@ -0,0 +1,272 @@
+package com.iscm.iam.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lock-free token buckets per key, all sharing one capacity and refill period. Each bucket's
+ * state is a single long packing the last refill time and the token count, updated with CAS,
+ * so a check costs a hash lookup and one or two atomic operations.
+ * <p>
+ * Buckets live in striped maps, each bounded to its share of {@code maxKeys}. A bucket that
+ * has refilled completely is indistinguishable from a new one, so {@link #evictIdle} drops those
+ * without losing state. When a stripe is full even after eviction, new keys in it share the
+ * stripe's overflow bucket, so a flood of distinct keys is limited collectively instead of
+ * growing memory.
+ */
+public final class TokenBucketRateLimiter {
+
+    private static final int TOKEN_BITS = 26;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // Tokens are counted in thousandths so slow refill rates accrue between checks
+    private static final long SCALE = 1000;
+    // A full stripe is swept for idle buckets at most this often, so a key flood cannot turn
+    // every check into a scan
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    public static final long MAX_CAPACITY = TOKEN_MASK / SCALE;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Bucket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long capacity;
+    private final long capacityUnits;
+    private final long periodMillis;
+    private final Clock clock;
+    // Bucket times are stored relative to this, so they fit the bits left over by the tokens
+    // (about 8 years of uptime)
+    private final long epochMillis;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int maxKeysPerStripe;
+
+    /**
+     * @param capacity tokens a full bucket holds, i.e. the largest burst
+     * @param period time in which an empty bucket refills completely
+     * @param stripes number of stripes, rounded up to a power of two
+     * @param maxKeys keys tracked in total before new keys share overflow buckets
+     */
+    public TokenBucketRateLimiter(long capacity, Duration period, int stripes, int maxKeys, Clock clock) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || period.toMillis() <= 0 || stripes <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("Invalid token bucket: " + capacity + "/" + period
+                    + ", stripes=" + stripes + ", maxKeys=" + maxKeys);
+        }
+        this.capacity = capacity;
+        this.capacityUnits = capacity * SCALE;
+        this.periodMillis = period.toMillis();
+        this.clock = clock;
+        this.epochMillis = clock.millis();
+        int stripeCount = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripeCount - 1;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / stripeCount);
+    }
+
+    /**
+     * Takes one token from the key's bucket. Returns {@code false}, taking nothing, if it is empty.
+     */
+    public boolean tryAcquire(String key) {
+        long now = now();
+        Bucket bucket = bucketFor(key, now);
+        while (true) {
+            long state = (long) STATE.getVolatile(bucket);
+            long refilled = refill(state, now);
+            long tokens = refilled & TOKEN_MASK;
+            if (tokens < SCALE) {
+                return false;
+            }
+            if (STATE.compareAndSet(bucket, state, refilled - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whole tokens currently left for the key, without taking any.
+     */
+    public long available(String key) {
+        long now = now();
+        Bucket bucket = existingBucket(key);
+        if (bucket == null) {
+            return capacity;
+        }
+        return (refill((long) STATE.getVolatile(bucket), now) & TOKEN_MASK) / SCALE;
+    }
+
+    /**
+     * Time until the key's bucket is full again.
+     */
+    public Duration timeUntilFull(String key) {
+        long now = now();
+        Bucket bucket = existingBucket(key);
+        if (bucket == null) {
+            return Duration.ZERO;
+        }
+        long missingUnits = capacityUnits - (refill((long) STATE.getVolatile(bucket), now) & TOKEN_MASK);
+        return Duration.ofMillis(ceilDiv(missingUnits * periodMillis, capacityUnits));
+    }
+
+    /**
+     * Empties the key's bucket, so it is refused until tokens refill.
+     */
+    public void drain(String key) {
+        long now = now();
+        STATE.setVolatile(bucketFor(key, now), pack(now, 0));
+    }
+
+    public void reset(String key) {
+        stripeFor(key).buckets.remove(key);
+    }
+
+    /**
+     * Drops the buckets that have refilled completely. A check racing with the removal may take
+     * a token from the dropped bucket, which then costs the key nothing; that can only happen to
+     * a key that was idle and full.
+     *
+     * @return number of buckets dropped
+     */
+    public int evictIdle() {
+        long now = now();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            evicted += stripe.evictFull(this, now);
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public Duration getPeriod() {
+        return Duration.ofMillis(periodMillis);
+    }
+
+    private Bucket bucketFor(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        Bucket bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= maxKeysPerStripe) {
+            if (now - stripe.lastSweep >= SWEEP_INTERVAL_MILLIS) {
+                stripe.evictFull(this, now);
+            }
+            if (stripe.buckets.size() >= maxKeysPerStripe) {
+                return stripe.overflow(this, now);
+            }
+        }
+        return stripe.buckets.computeIfAbsent(key, k -> new Bucket(pack(now, capacityUnits)));
+    }
+
+    private Bucket existingBucket(String key) {
+        return stripeFor(key).buckets.get(key);
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    /**
+     * Returns the state with the tokens accrued since the last refill added. The stored time only
+     * advances by the time those whole units took to accrue, so a remainder is not lost when the
+     * bucket is checked more often than a unit accrues.
+     */
+    private long refill(long state, long now) {
+        long last = state >>> TOKEN_BITS;
+        long tokens = state & TOKEN_MASK;
+        if (tokens >= capacityUnits) {
+            return pack(now, capacityUnits);
+        }
+        long elapsed = now - last;
+        if (elapsed <= 0) {
+            return state;
+        }
+        if (elapsed >= periodMillis) {
+            return pack(now, capacityUnits);
+        }
+        long accrued = elapsed * capacityUnits / periodMillis;
+        if (accrued == 0) {
+            return state;
+        }
+        if (tokens + accrued >= capacityUnits) {
+            return pack(now, capacityUnits);
+        }
+        return pack(last + ceilDiv(accrued * periodMillis, capacityUnits), tokens + accrued);
+    }
+
+    private boolean isFull(Bucket bucket, long now) {
+        return (refill((long) STATE.getVolatile(bucket), now) & TOKEN_MASK) >= capacityUnits;
+    }
+
+    private long now() {
+        return Math.max(0, clock.millis() - epochMillis);
+    }
+
+    private static long pack(long time, long tokens) {
+        return (time << TOKEN_BITS) | tokens;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static final class Bucket {
+        @SuppressWarnings("unused") // accessed through STATE
+        private volatile long state;
+
+        Bucket(long state) {
+            this.state = state;
+        }
+    }
+
+    private static final class Stripe {
+
+        private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private volatile Bucket overflow;
+        private volatile long lastSweep;
+
+        int evictFull(TokenBucketRateLimiter limiter, long now) {
+            lastSweep = now;
+            int before = buckets.size();
+            buckets.values().removeIf(bucket -> limiter.isFull(bucket, now));
+            return Math.max(0, before - buckets.size());
+        }
+
+        Bucket overflow(TokenBucketRateLimiter limiter, long now) {
+            Bucket bucket = overflow;
+            if (bucket == null) {
+                synchronized (this) {
+                    bucket = overflow;
+                    if (bucket == null) {
+                        bucket = new Bucket(pack(now, limiter.capacityUnits));
+                        overflow = bucket;
+                    }
+                }
+            }
+            return bucket;
+        }
+    }
+}
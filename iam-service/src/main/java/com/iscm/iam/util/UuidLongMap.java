@@ -0,0 +1,176 @@
+package com.iscm.iam.util;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing map from UUID to a positive long, stored in flat primitive arrays
+ * (no boxing, no per-entry objects). Reads are lock-free and allocation-free; writes and
+ * resizes are serialised. Values only ever grow, so a racing reader at worst sees the
+ * previous value. Entries are removed by rebuilding the table with {@link #retainIf}.
+ */
+public final class UuidLongMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table;
+    // The nil UUID cannot be stored in the arrays, where msb == 0 && lsb == 0 marks a free slot
+    private volatile long nilValue;
+
+    public UuidLongMap() {
+        this.table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * @return the value for the key, or 0 if absent
+     */
+    public long get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Looks up a key in canonical 8-4-4-4-12 text form without parsing it into a UUID.
+     * @return the value, or 0 if absent or malformed
+     */
+    public long get(CharSequence key) {
+        if (key == null || key.length() != 36) {
+            return 0;
+        }
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = key.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return 0;
+                }
+                continue;
+            }
+            int nibble = Character.digit(c, 16);
+            if (nibble < 0) {
+                return 0;
+            }
+            if (digits++ < 16) {
+                msb = (msb << 4) | nibble;
+            } else {
+                lsb = (lsb << 4) | nibble;
+            }
+        }
+        return get(msb, lsb);
+    }
+
+    public long get(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return nilValue;
+        }
+        Table current = table;
+        int mask = current.capacity - 1;
+        for (int slot = spread(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            long slotMsb = current.msb.get(slot);
+            long slotLsb = current.lsb.get(slot);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return current.values.get(slot);
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Stores the value unless a larger one is already present.
+     */
+    public synchronized void putMax(UUID key, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Values must be positive");
+        }
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            nilValue = Math.max(nilValue, value);
+            return;
+        }
+        if ((table.size + 1) * 2 > table.capacity) {
+            table = rebuild(table, table.capacity * 2, v -> true);
+        }
+        insert(table, msb, lsb, value);
+    }
+
+    /**
+     * Rebuilds the table keeping only entries whose value matches the predicate.
+     */
+    public synchronized void retainIf(LongPredicate keep) {
+        if (nilValue != 0 && !keep.test(nilValue)) {
+            nilValue = 0;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < table.size * 2) {
+            capacity <<= 1;
+        }
+        table = rebuild(table, capacity, keep);
+    }
+
+    public int size() {
+        return table.size + (nilValue != 0 ? 1 : 0);
+    }
+
+    private static void insert(Table target, long msb, long lsb, long value) {
+        int mask = target.capacity - 1;
+        for (int slot = spread(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            long slotMsb = target.msb.get(slot);
+            long slotLsb = target.lsb.get(slot);
+            if (slotMsb == msb && slotLsb == lsb) {
+                if (value > target.values.get(slot)) {
+                    target.values.set(slot, value);
+                }
+                return;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                // Publish value before the key so readers matching the key see it
+                target.values.set(slot, value);
+                target.lsb.set(slot, lsb);
+                target.msb.set(slot, msb);
+                target.size++;
+                return;
+            }
+        }
+    }
+
+    private static Table rebuild(Table source, int capacity, LongPredicate keep) {
+        Table rebuilt = new Table(capacity);
+        for (int slot = 0; slot < source.capacity; slot++) {
+            long msb = source.msb.get(slot);
+            long lsb = source.lsb.get(slot);
+            long value = source.values.get(slot);
+            if ((msb != 0 || lsb != 0) && keep.test(value)) {
+                insert(rebuilt, msb, lsb, value);
+            }
+        }
+        return rebuilt;
+    }
+
+    private static int spread(long msb, long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static final class Table {
+        final int capacity;
+        final AtomicLongArray msb;
+        final AtomicLongArray lsb;
+        final AtomicLongArray values;
+        int size; // guarded by the map's monitor
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.msb = new AtomicLongArray(capacity);
+            this.lsb = new AtomicLongArray(capacity);
+            this.values = new AtomicLongArray(capacity);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+-- Sliding-window counter: grants up to ARGV[3] of the ARGV[1] requests allowed per ARGV[2] ms.
+-- The count of the previous fixed window is weighted by how much of it the sliding window still
+-- covers. Time comes from Redis, so nodes with skewed clocks share the same windows.
+-- KEYS[1] hash holding the window index (w), its count (c) and the previous window's count (p)
+-- Returns the number of requests granted, 0 when the limit is reached.
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local wanted = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local index = math.floor(now / window)
+
+local state = redis.call('HMGET', KEYS[1], 'w', 'c', 'p')
+local stored = tonumber(state[1])
+local current, previous = 0, 0
+if stored == index then
+    current = tonumber(state[2]) or 0
+    previous = tonumber(state[3]) or 0
+elseif stored == index - 1 then
+    previous = tonumber(state[2]) or 0
+end
+
+local used = current + math.floor(previous * (window - (now - index * window)) / window)
+local granted = math.min(wanted, limit - used)
+if granted <= 0 then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], 'w', index, 'c', current + granted, 'p', previous)
+redis.call('PEXPIRE', KEYS[1], window * 2)
+return granted
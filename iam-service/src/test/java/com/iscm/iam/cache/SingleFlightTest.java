@@ -0,0 +1,101 @@
+package com.iscm.iam.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentLoadsOfSameKeyShareOneCall() throws Exception {
+        // Given
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.load("key", key -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // When
+            List<Future<String>> followers = IntStream.range(0, 4)
+                .mapToObj(i -> executor.submit(() -> singleFlight.load("key", key -> {
+                    calls.incrementAndGet();
+                    return "other";
+                })))
+                .toList();
+            while (singleFlight.getCoalesced() < 4) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            // Then
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(0, singleFlight.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testTryLoadDoesNotWaitForRunningLoad() throws Exception {
+        // Given
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> singleFlight.load("key", key -> {
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        holder.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        boolean ran = singleFlight.tryLoad("key", key -> "other");
+
+        // Then
+        assertFalse(ran);
+        release.countDown();
+        holder.join(5000);
+        assertTrue(singleFlight.tryLoad("key", key -> "other"));
+    }
+
+    @Test
+    void testLoaderExceptionIsRethrownAndNotRemembered() {
+        // Given
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+
+        // When / Then
+        assertThrows(IllegalStateException.class,
+            () -> singleFlight.load("key", key -> { throw new IllegalStateException("down"); }));
+        assertEquals("value", singleFlight.load("key", key -> "value"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.iscm.iam.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TwoTierCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void testLoaderRunsOnlyOnMiss() {
+        // Given
+        TwoTierCache<CachedUser> cache = cache(null);
+        AtomicInteger loads = new AtomicInteger();
+        CachedUser user = user(UUID.randomUUID());
+
+        // When
+        cache.get("a", key -> { loads.incrementAndGet(); return user; });
+        CachedUser cached = cache.get("a", key -> { loads.incrementAndGet(); return user; });
+
+        // Then
+        assertSame(user, cached);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getLocalHits());
+    }
+
+    @Test
+    void testEvictAndEvictTagRemoveEntries() {
+        // Given
+        UUID tenantA = UUID.randomUUID();
+        UUID tenantB = UUID.randomUUID();
+        TwoTierCache<CachedUser> cache = cache(null);
+        cache.put("a1", user(tenantA));
+        cache.put("a2", user(tenantA));
+        cache.put("b1", user(tenantB));
+
+        // When
+        cache.evict("b1");
+        cache.evictTag("tenant:" + tenantA);
+
+        // Then
+        assertNull(cache.getIfPresent("a1"));
+        assertNull(cache.getIfPresent("a2"));
+        assertNull(cache.getIfPresent("b1"));
+        assertEquals(0, cache.localSize());
+    }
+
+    @Test
+    void testRedisFailureFallsBackToLoaderAndBacksOff() {
+        // Given
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.opsForValue()).thenThrow(new RedisConnectionFailureException("down"));
+        TwoTierCache<CachedUser> cache = cache(redis);
+        CachedUser user = user(UUID.randomUUID());
+
+        // When
+        CachedUser first = cache.get("a", key -> user);
+        cache.evict("a");
+        CachedUser second = cache.get("a", key -> user);
+
+        // Then
+        assertSame(user, first);
+        assertSame(user, second);
+        assertEquals(1, cache.getRemoteErrors());
+        assertFalse(cache.isRemoteAvailable());
+        verify(redis, times(1)).opsForValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEvictionMissedByRedisIsReplayedBeforeNextRead() {
+        // Given - the delete fails, and Redis is retried straight away
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.delete("iam:cache:users:a")).thenThrow(new RedisConnectionFailureException("down"));
+        TwoTierCache<CachedUser> cache = new TwoTierCache<>("users", CachedUser.class, user -> Set.of(),
+            100, Duration.ofSeconds(30), redis, objectMapper, "iam:cache:",
+            Duration.ofHours(1), Duration.ZERO, 0);
+        cache.evict("a");
+
+        // When
+        cache.getIfPresent("a");
+
+        // Then
+        InOrder order = inOrder(redis, values);
+        order.verify(redis).delete(List.of("iam:cache:users:a"));
+        order.verify(values).get("iam:cache:users:a");
+        assertEquals(1, cache.getRemoteErrors());
+    }
+
+    @Test
+    void testReadNearExpiryRefreshesEarlyAndKeepsServing() {
+        // Given - a slow load and a beta large enough that any read counts as near expiry
+        TwoTierCache<CachedUser> cache = cache(null, Duration.ofSeconds(1), 1e9);
+        CachedUser first = user(UUID.randomUUID());
+        CachedUser refreshed = user(UUID.randomUUID());
+        cache.get("a", key -> { sleep(); return first; });
+
+        // When
+        CachedUser served = cache.get("a", key -> refreshed);
+
+        // Then
+        assertSame(first, served);
+        assertEquals(1, cache.getEarlyRefreshes());
+        assertSame(refreshed, cache.getIfPresent("a"));
+    }
+
+    @Test
+    void testLoadOverlappingEvictionIsNotCached() {
+        // Given
+        TwoTierCache<CachedUser> cache = cache(null);
+        CachedUser user = user(UUID.randomUUID());
+
+        // When - the row changes and is evicted while it is being loaded
+        CachedUser loaded = cache.get("a", key -> { cache.evict("a"); return user; });
+
+        // Then
+        assertSame(user, loaded);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    private TwoTierCache<CachedUser> cache(StringRedisTemplate redis) {
+        return cache(redis, Duration.ofSeconds(30), 0);
+    }
+
+    private TwoTierCache<CachedUser> cache(StringRedisTemplate redis, Duration localTtl, double earlyRefreshBeta) {
+        return new TwoTierCache<>("users", CachedUser.class,
+            user -> Set.of("tenant:" + user.tenantId()),
+            100, localTtl, redis, objectMapper, "iam:cache:",
+            Duration.ofHours(1), Duration.ofSeconds(30), earlyRefreshBeta);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CachedUser user(UUID tenantId) {
+        return new CachedUser(UUID.randomUUID(), "user@example.com", tenantId, true, null, List.of("USER"));
+    }
+}
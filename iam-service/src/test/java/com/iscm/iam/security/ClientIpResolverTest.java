@@ -0,0 +1,63 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientIpResolverTest {
+
+    private ClientIpResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(resolver, "trustedProxies", new String[] {"10.0.0.0/8", " 172.16.0.1 "});
+        ReflectionTestUtils.invokeMethod(resolver, "init");
+    }
+
+    @Test
+    void testForwardedForFromUntrustedPeerIsIgnored() {
+        // Given - a client sending the header straight to the service
+        MockHttpServletRequest request = request("203.0.113.7", "198.51.100.1");
+
+        // When / Then
+        assertEquals("203.0.113.7", resolver.resolve(request));
+    }
+
+    @Test
+    void testSpoofedLeftmostEntryIsSkipped() {
+        // Given - the client prepended an entry; the gateway appended the real peer
+        MockHttpServletRequest request = request("10.0.0.5", "192.0.2.99, 203.0.113.7");
+
+        // When / Then
+        assertEquals("203.0.113.7", resolver.resolve(request));
+    }
+
+    @Test
+    void testChainedTrustedProxiesAreSkipped() {
+        // Given
+        MockHttpServletRequest request = request("10.0.0.5", "203.0.113.7, 172.16.0.1");
+
+        // When / Then
+        assertEquals("203.0.113.7", resolver.resolve(request));
+    }
+
+    @Test
+    void testPeerIsUsedWhenEveryHopIsTrusted() {
+        // Given
+        MockHttpServletRequest request = request("10.0.0.5", "10.0.0.9");
+
+        // When / Then
+        assertEquals("10.0.0.5", resolver.resolve(request));
+    }
+
+    private MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/login");
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+}
@@ -0,0 +1,87 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayIdentityVerifierTest {
+
+    private static final String SECRET = "test-gateway-identity-secret";
+
+    private GatewayIdentityVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        verifier = new GatewayIdentityVerifier();
+        ReflectionTestUtils.setField(verifier, "enabled", true);
+        ReflectionTestUtils.setField(verifier, "secret", SECRET);
+        ReflectionTestUtils.setField(verifier, "maxAgeMillis", 60000L);
+        ReflectionTestUtils.invokeMethod(verifier, "init");
+    }
+
+    @Test
+    void testSignedHeadersAreAccepted() throws Exception {
+        // Given
+        MockHttpServletRequest request = signedRequest();
+
+        // When
+        JwtUtil.JwtClaims claims = verifier.verify(request);
+
+        // Then
+        assertNotNull(claims);
+        assertEquals("0b6d9c1e-6f5b-4a51-9a39-3f0e7f4c2a10", claims.getUserId());
+        assertEquals("test@example.com", claims.getEmail());
+        assertEquals(List.of("USER", "ADMIN"), claims.getRoles());
+        assertEquals(4L, claims.getPermissionsVersion());
+        assertEquals("5d1f8a2b-3c4e-4f60-8a7b-9c0d1e2f3a4b", claims.getSessionId());
+        assertEquals("Aw", claims.getPermissions());
+        assertEquals(1760000000123L, claims.getIssuedAtMillis());
+    }
+
+    @Test
+    void testTamperedHeadersAreRejected() throws Exception {
+        // Given
+        MockHttpServletRequest request = signedRequest();
+        request.removeHeader(GatewayIdentityVerifier.ROLES);
+        request.addHeader(GatewayIdentityVerifier.ROLES, "SUPER_ADMIN");
+
+        // When / Then
+        assertNull(verifier.verify(request));
+    }
+
+    private MockHttpServletRequest signedRequest() throws Exception {
+        String[][] headers = {
+            {GatewayIdentityVerifier.USER_ID, "0b6d9c1e-6f5b-4a51-9a39-3f0e7f4c2a10"},
+            {GatewayIdentityVerifier.USER_EMAIL, "test@example.com"},
+            {GatewayIdentityVerifier.TENANT_ID, "00000000-0000-0000-0000-000000000000"},
+            {GatewayIdentityVerifier.ROLES, "USER,ADMIN"},
+            {GatewayIdentityVerifier.TOKEN_ID, "jti-1"},
+            {GatewayIdentityVerifier.TOKEN_ISSUED_AT, "1760000000123"},
+            {GatewayIdentityVerifier.TOKEN_EXPIRES_AT, String.valueOf(System.currentTimeMillis() + 300000)},
+            {GatewayIdentityVerifier.PERMISSIONS_VERSION, "4"},
+            {GatewayIdentityVerifier.SESSION_ID, "5d1f8a2b-3c4e-4f60-8a7b-9c0d1e2f3a4b"},
+            {GatewayIdentityVerifier.PERMISSIONS, "Aw"},
+            {GatewayIdentityVerifier.IDENTITY_TIMESTAMP, String.valueOf(System.currentTimeMillis())}
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        StringBuilder canonical = new StringBuilder();
+        for (String[] header : headers) {
+            request.addHeader(header[0], header[1]);
+            canonical.append(header[1]).append('\n');
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        request.addHeader(GatewayIdentityVerifier.IDENTITY_SIGNATURE, Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8))));
+        return request;
+    }
+}
@@ -0,0 +1,174 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.repository.TokenRevocationWatermarkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtBlacklistServiceTest {
+
+    private JwtUtil jwtUtil;
+    private TokenRevocationWatermarkRepository watermarkRepository;
+    private TokenRevocationWatermarkService watermarkService;
+    private RevocationPropagator propagator;
+    private JwtBlacklistService blacklistService;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret",
+            "test-secret-key-that-is-long-enough-for-hs512-123!");
+        ReflectionTestUtils.setField(jwtUtil, "jwtRefreshSecret",
+            "test-refresh-secret-key-that-is-long-enough-for-hs512-456!");
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 900L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        watermarkRepository = mock(TokenRevocationWatermarkRepository.class);
+        propagator = spy(new LocalRevocationPropagator());
+        watermarkService = new TokenRevocationWatermarkService(watermarkRepository, jwtUtil, propagator);
+        blacklistService = new JwtBlacklistService(jwtUtil, watermarkService, propagator);
+        ReflectionTestUtils.setField(blacklistService, "blacklistEnabled", true);
+        ReflectionTestUtils.setField(blacklistService, "maxBlacklistSize", 1000);
+        ReflectionTestUtils.setField(blacklistService, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(blacklistService, "bucketSeconds", 60L);
+        ReflectionTestUtils.invokeMethod(blacklistService, "init");
+    }
+
+    @Test
+    void testBlacklistedTokenIsRevoked() {
+        // Given
+        String token = jwtUtil.generateAccessToken(UUID.randomUUID(), "test@example.com", List.of("USER"), null);
+        String otherToken = jwtUtil.generateAccessToken(UUID.randomUUID(), "other@example.com", List.of("USER"), null);
+
+        // When
+        blacklistService.blacklistToken(token, "test");
+
+        // Then
+        assertTrue(blacklistService.isTokenBlacklisted(token));
+        assertFalse(blacklistService.isTokenBlacklisted(otherToken));
+        assertEquals(1, blacklistService.getBlacklistStatistics().getActiveBlacklistedTokens());
+    }
+
+    @Test
+    void testOnlyUnexpiredTokensAreKept() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+
+        // When
+        blacklistService.blacklistJti("expired-jti", now - 5);
+        blacklistService.blacklistJti("live-jti", now + 600);
+        blacklistService.cleanupExpiredTokens();
+
+        // Then
+        assertTrue(blacklistService.isJtiRevoked("live-jti", now + 600));
+        assertFalse(blacklistService.isJtiRevoked("expired-jti", now - 5));
+        assertFalse(blacklistService.isJtiRevoked("unknown-jti", now + 600));
+        assertEquals(1, blacklistService.getBlacklistStatistics().getActiveBlacklistedTokens());
+        assertTrue(blacklistService.getBlacklistStatistics().getBloomFilterBytes() > 0);
+    }
+
+    @Test
+    void testUserWatermarkRevokesEarlierTokens() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        String token = jwtUtil.generateAccessToken(userId, "test@example.com", List.of("USER"), null);
+        String otherUsersToken = jwtUtil.generateAccessToken(UUID.randomUUID(), "other@example.com", List.of("USER"), null);
+
+        // When
+        blacklistService.blacklistAllUserTokens(userId, "test");
+
+        // Then
+        assertTrue(blacklistService.isTokenBlacklisted(token));
+        assertFalse(blacklistService.isTokenBlacklisted(otherUsersToken));
+        assertTrue(blacklistService.areUserTokensBlacklisted(userId));
+        verify(watermarkRepository).upsertWatermark(eq("USER"), eq(userId), anyLong());
+    }
+
+    @Test
+    void testWatermarkHasMillisecondPrecision() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        blacklistService.blacklistAllUserTokens(userId, "test");
+        long watermark = watermarkService.getUserWatermark(userId);
+
+        // When / Then - a token from earlier in the same second is revoked, a later one is not
+        assertTrue(watermarkService.isRevoked(userId.toString(), null, watermark - 1));
+        assertTrue(watermarkService.isRevoked(userId.toString(), null, watermark));
+        assertFalse(watermarkService.isRevoked(userId.toString(), null, watermark + 1));
+    }
+
+    @Test
+    void testLoginAfterRevocationStaysValid() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        blacklistService.blacklistAllUserTokens(userId, "test");
+        Thread.sleep(2);
+
+        // When - the login that follows "log out everywhere"
+        String token = jwtUtil.generateAccessToken(userId, "test@example.com", List.of("USER"), null);
+
+        // Then
+        assertFalse(blacklistService.isTokenBlacklisted(token));
+    }
+
+    @Test
+    void testTenantWatermarkCoversNilTenant() {
+        // Given
+        UUID tenantId = new UUID(0, 0);
+        long issuedAt = System.currentTimeMillis() - 10_000;
+
+        // When
+        blacklistService.blacklistAllTenantTokens(tenantId, "test");
+
+        // Then
+        assertTrue(watermarkService.isRevoked(UUID.randomUUID().toString(), tenantId.toString(), issuedAt));
+        assertFalse(watermarkService.isRevoked(UUID.randomUUID().toString(), UUID.randomUUID().toString(), issuedAt));
+    }
+
+    @Test
+    void testLocalRevocationsArePublishedOnce() {
+        // Given
+        long expiresAt = Instant.now().getEpochSecond() + 600;
+        UUID userId = UUID.randomUUID();
+
+        // When
+        blacklistService.blacklistJti("published-jti", expiresAt);
+        blacklistService.blacklistJti("published-jti", expiresAt);
+        blacklistService.blacklistAllUserTokens(userId, "test");
+
+        // Then
+        verify(propagator, times(1)).publishJti("published-jti", expiresAt);
+        verify(propagator).publishWatermark(eq(RevocationEvent.Type.USER_WATERMARK), eq(userId), anyLong());
+    }
+
+    @Test
+    void testRemoteRevocationsAreAppliedWithoutRepublishing() {
+        // Given
+        long now = Instant.now().getEpochSecond();
+        long nowMillis = System.currentTimeMillis();
+        UUID userId = UUID.randomUUID();
+        RevocationEvent jtiEvent = RevocationEvent.decode(
+            RevocationEvent.jti("remote-jti", now + 600, "other-node").encode());
+        RevocationEvent watermarkEvent = RevocationEvent.watermark(
+            RevocationEvent.Type.USER_WATERMARK, userId, nowMillis, "other-node");
+
+        // When
+        blacklistService.onRemoteRevocation(jtiEvent);
+        blacklistService.onRemoteRevocation(watermarkEvent);
+        watermarkService.onRemoteRevocation(jtiEvent);
+        watermarkService.onRemoteRevocation(watermarkEvent);
+
+        // Then
+        assertTrue(blacklistService.isJtiRevoked("remote-jti", now + 600));
+        assertTrue(watermarkService.isRevoked(userId.toString(), null, nowMillis - 1));
+        verify(propagator, never()).publish(any());
+        verifyNoInteractions(watermarkRepository);
+    }
+}
@@ -0,0 +1,69 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyManagerTest {
+
+    private JwtKeyManager keyManager;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        keyManager = new JwtKeyManager(new DefaultResourceLoader());
+        ReflectionTestUtils.setField(keyManager, "algorithm", JwtKeyManager.RS256);
+        ReflectionTestUtils.setField(keyManager, "privateKeyLocation", "");
+        ReflectionTestUtils.setField(keyManager, "rotationOverlapSeconds", 1800L);
+        ReflectionTestUtils.invokeMethod(keyManager, "init");
+
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret",
+            "test-secret-key-that-is-long-enough-for-hs512-123!");
+        ReflectionTestUtils.setField(jwtUtil, "jwtRefreshSecret",
+            "test-refresh-secret-key-that-is-long-enough-for-hs512-456!");
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 300L);
+        ReflectionTestUtils.setField(jwtUtil, "keyManager", keyManager);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+    }
+
+    @Test
+    void testTokensSignedBeforeRotationStillVerify() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        String token = jwtUtil.generateAccessToken(userId, "test@example.com", List.of("USER"), null);
+        String oldKid = keyManager.getActiveKeyId();
+
+        // When
+        keyManager.rotate();
+        String rotatedToken = jwtUtil.generateAccessToken(userId, "test@example.com", List.of("USER"), null);
+
+        // Then
+        assertNotEquals(oldKid, keyManager.getActiveKeyId());
+        assertEquals(userId.toString(), jwtUtil.getUserIdFromToken(token));
+        assertEquals(userId.toString(), jwtUtil.getUserIdFromToken(rotatedToken));
+        assertTrue(keyManager.getJwksJson().contains(oldKid));
+        assertTrue(keyManager.getJwksJson().contains(keyManager.getActiveKeyId()));
+    }
+
+    @Test
+    void testUnknownKidIsRejected() {
+        // Given
+        JwtKeyManager otherIssuer = new JwtKeyManager(new DefaultResourceLoader());
+        ReflectionTestUtils.setField(otherIssuer, "algorithm", JwtKeyManager.RS256);
+        ReflectionTestUtils.setField(otherIssuer, "privateKeyLocation", "");
+        ReflectionTestUtils.invokeMethod(otherIssuer, "init");
+        ReflectionTestUtils.setField(jwtUtil, "keyManager", otherIssuer);
+        String foreignToken = jwtUtil.generateAccessToken(UUID.randomUUID(), "test@example.com", List.of("USER"), null);
+        ReflectionTestUtils.setField(jwtUtil, "keyManager", keyManager);
+
+        // When / Then
+        assertNull(jwtUtil.extractAllClaims(foreignToken));
+    }
+}
@@ -18,8 +18,13 @@ class JwtUtilTest {
         jwtUtil = new JwtUtil();
         ReflectionTestUtils.setField(jwtUtil, "jwtSecret", 
             "test-secret-key-that-is-long-enough-for-hs512-123!");
+        ReflectionTestUtils.setField(jwtUtil, "jwtRefreshSecret",
+            "test-refresh-secret-key-that-is-long-enough-for-hs512-456!");
         ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 300L);
         ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 1800L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheEnabled", true);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
     }
 
     @Test
@@ -60,10 +65,28 @@ class JwtUtilTest {
 
         // When
         String refreshToken = jwtUtil.generateRefreshToken(userId);
-        boolean isValid = jwtUtil.validateToken(refreshToken);
+        boolean isValid = jwtUtil.validateRefreshToken(refreshToken);
 
         // Then
         assertTrue(isValid);
-        assertEquals(userId.toString(), jwtUtil.getUserIdFromToken(refreshToken));
+        assertEquals(userId.toString(), jwtUtil.getUserIdFromRefreshToken(refreshToken));
+        assertFalse(jwtUtil.validateToken(refreshToken));
+    }
+
+    @Test
+    void testVerifiedClaimsAreCached() {
+        // Given
+        String token = jwtUtil.generateAccessToken(
+            UUID.randomUUID(), "test@example.com", List.of("USER"), UUID.randomUUID(), 7L);
+
+        // When
+        JwtUtil.JwtClaims first = jwtUtil.extractAllClaims(token);
+        JwtUtil.JwtClaims second = jwtUtil.extractAllClaims(token);
+
+        // Then
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(7L, first.getPermissionsVersion());
+        assertEquals(first.getJti(), jwtUtil.getJtiFromToken(token));
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptTrackerTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private LoginAttemptTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new LoginAttemptTracker();
+        ReflectionTestUtils.setField(tracker, "maxAccountAttempts", 3);
+        ReflectionTestUtils.setField(tracker, "lockDurationMinutes", 30L);
+        ReflectionTestUtils.setField(tracker, "windowMinutes", 15L);
+        ReflectionTestUtils.setField(tracker, "maxIpAttempts", 5);
+        ReflectionTestUtils.setField(tracker, "maxTrackedKeys", 1000L);
+        setTime(Duration.ZERO);
+        ReflectionTestUtils.invokeMethod(tracker, "init");
+    }
+
+    @Test
+    void testAccountLocksOnceLimitIsReachedWithinWindow() {
+        // When
+        assertNull(tracker.recordFailure("user@example.com", null));
+        assertNull(tracker.recordFailure("USER@example.com", null));
+        LocalDateTime lockedUntil = tracker.recordFailure("user@example.com", null);
+
+        // Then
+        assertNotNull(lockedUntil);
+        assertEquals(lockedUntil, tracker.accountLockedUntil("user@example.com"));
+        assertNull(tracker.accountLockedUntil("other@example.com"));
+
+        // When - the lock runs out
+        setTime(Duration.ofMinutes(31));
+
+        // Then
+        assertNull(tracker.accountLockedUntil("user@example.com"));
+        assertNull(tracker.recordFailure("user@example.com", null));
+    }
+
+    @Test
+    void testFailuresOutsideWindowDoNotLock() {
+        // When
+        tracker.recordFailure("slow@example.com", null);
+        tracker.recordFailure("slow@example.com", null);
+        setTime(Duration.ofMinutes(16));
+
+        // Then
+        assertNull(tracker.recordFailure("slow@example.com", null));
+        assertNull(tracker.accountLockedUntil("slow@example.com"));
+    }
+
+    @Test
+    void testIpIsBlockedAcrossAccounts() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            tracker.recordFailure("user" + i + "@example.com", "10.0.0.1");
+        }
+
+        // Then
+        assertTrue(tracker.isIpBlocked("10.0.0.1"));
+        assertFalse(tracker.isIpBlocked("10.0.0.2"));
+
+        // When - the oldest failure leaves the window
+        setTime(Duration.ofMinutes(16));
+
+        // Then
+        assertFalse(tracker.isIpBlocked("10.0.0.1"));
+    }
+
+    @Test
+    void testResetClearsAccountFailures() {
+        // Given
+        tracker.recordFailure("reset@example.com", null);
+        tracker.recordFailure("reset@example.com", null);
+
+        // When
+        tracker.reset("reset@example.com");
+
+        // Then
+        assertNull(tracker.recordFailure("reset@example.com", null));
+    }
+
+    private void setTime(Duration sinceStart) {
+        ReflectionTestUtils.setField(tracker, "clock",
+            Clock.fixed(START.plus(sinceStart), ZoneId.of("UTC")));
+    }
+}
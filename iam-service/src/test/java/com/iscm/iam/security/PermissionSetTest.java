@@ -0,0 +1,69 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionSetTest {
+
+    private final PermissionIndex index = new PermissionIndex(Map.of(
+        "USER_READ", 0,
+        "USER_WRITE", 1,
+        "ORDER_READ", 70));
+
+    @Test
+    void testMembershipChecksUseBits() {
+        // Given
+        long[] bits = new long[2];
+        bits[0] |= 1L;
+        bits[1] |= 1L << (70 - 64);
+        PermissionSet permissions = new PermissionSet(List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), bits, index);
+
+        // Then
+        assertTrue(permissions.hasPermission("USER_READ"));
+        assertFalse(permissions.hasPermission("USER_WRITE"));
+        assertTrue(permissions.hasAuthority("ORDER_READ"));
+        assertTrue(permissions.hasAuthority("ROLE_ADMIN"));
+        assertTrue(permissions.hasRole("ADMIN"));
+        assertFalse(permissions.hasPermission("UNKNOWN"));
+        assertTrue(permissions.contains(new SimpleGrantedAuthority("USER_READ")));
+        assertEquals(3, permissions.size());
+        assertEquals(List.of("ROLE_ADMIN", "USER_READ", "ORDER_READ"),
+            permissions.stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Test
+    void testEncodedBitmapRoundTrips() {
+        // Given
+        long[] bits = new long[2];
+        bits[0] |= 0b11L;
+        bits[1] |= 1L << (70 - 64);
+        PermissionSet permissions = new PermissionSet(List.of(), bits, index);
+
+        // When
+        String encoded = permissions.encode();
+        PermissionSet decoded = new PermissionSet(List.of(), PermissionSet.decode(encoded), index);
+
+        // Then
+        assertTrue(encoded.length() <= 12, "Encoded bitmap was " + encoded);
+        assertTrue(decoded.hasPermission("USER_READ"));
+        assertTrue(decoded.hasPermission("USER_WRITE"));
+        assertTrue(decoded.hasPermission("ORDER_READ"));
+    }
+
+    @Test
+    void testPositionsOfRemovedPermissionsAreSkipped() {
+        // Given - position 5 was assigned to a permission that no longer exists
+        long[] bits = {1L | (1L << 5)};
+        PermissionSet permissions = new PermissionSet(List.of(), bits, index);
+
+        // Then
+        assertEquals(1, permissions.size());
+        assertEquals(List.of("USER_READ"), permissions.stream().map(GrantedAuthority::getAuthority).toList());
+    }
+}
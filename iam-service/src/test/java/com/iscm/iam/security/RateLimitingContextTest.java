@@ -0,0 +1,31 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.service.BasicRateLimitingService;
+import com.iscm.iam.service.DistributedRateLimitingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates the rate limiting beans the way Spring does, without a database or Docker, so a bean
+ * that cannot be constructed fails here rather than only at application startup.
+ */
+class RateLimitingContextTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withUserConfiguration(RateLimitProperties.class, BasicRateLimitingService.class,
+            DistributedRateLimitingService.class, RateLimitingService.class, RequestClassifier.class,
+            ClientIpResolver.class, RateLimitingFilter.class);
+
+    @Test
+    void testRateLimitingBeansAreCreated() {
+        contextRunner.run(context -> {
+            assertNull(context.getStartupFailure());
+            assertNotNull(context.getBean(BasicRateLimitingService.class));
+            assertFalse(context.getBean(DistributedRateLimitingService.class).isDistributed());
+            assertNotNull(context.getBean(RateLimitingFilter.class));
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern.RequestType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitingFilterTest {
+
+    private final RateLimitProperties properties = new RateLimitProperties();
+    private RateLimitingService rateLimitingService;
+    private RequestClassifier requestClassifier;
+    private RateLimitingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimitingService = mock(RateLimitingService.class);
+        requestClassifier = mock(RequestClassifier.class);
+        when(rateLimitingService.isEnabled()).thenReturn(true);
+        ClientIpResolver clientIpResolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(clientIpResolver, "trustedProxies", new String[] {"10.0.0.0/8"});
+        ReflectionTestUtils.invokeMethod(clientIpResolver, "init");
+        filter = new RateLimitingFilter(rateLimitingService, properties, requestClassifier, clientIpResolver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testForwardedForFromUntrustedPeerIsIgnored() throws Exception {
+        // Given
+        classifyAs(RequestType.AUTH_LOGIN, properties.getAuth(), "login:");
+        MockHttpServletRequest request = request("/api/v1/auth/login", "203.0.113.7");
+        request.addHeader("X-Forwarded-For", "198.51.100.1");
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        verify(rateLimitingService).isRateLimited(properties.getAuth(), "login:203.0.113.7");
+    }
+
+    @Test
+    void testClientIpIsTakenFromTrustedProxy() throws Exception {
+        // Given - the client prepended a spoofed entry; the gateway appended the real peer
+        classifyAs(RequestType.AUTH_LOGIN, properties.getAuth(), "login:");
+        MockHttpServletRequest request = request("/api/v1/auth/login", "10.0.0.5");
+        request.addHeader("X-Forwarded-For", "192.0.2.99, 203.0.113.7");
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        verify(rateLimitingService).isRateLimited(properties.getAuth(), "login:203.0.113.7");
+    }
+
+    @Test
+    void testMfaIsCountedPerAuthenticatedUser() throws Exception {
+        // Given
+        classifyAs(RequestType.AUTH_MFA, properties.getAuth(), "mfa:");
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken("user-1", null, List.of()));
+
+        // When
+        filter.doFilter(request("/api/v1/mfa/verify", "203.0.113.7"), new MockHttpServletResponse(),
+            new MockFilterChain());
+
+        // Then
+        verify(rateLimitingService).isRateLimited(properties.getAuth(), "mfa:user:user-1");
+    }
+
+    @Test
+    void testPasswordResetIsCountedPerClientIp() throws Exception {
+        // Given - the email is in the JSON body, so it cannot be the key
+        classifyAs(RequestType.AUTH_PASSWORD_RESET, properties.getAuth(), "reset:");
+
+        // When
+        filter.doFilter(request("/api/v1/password-reset/request", "203.0.113.7"), new MockHttpServletResponse(),
+            new MockFilterChain());
+
+        // Then
+        verify(rateLimitingService).isRateLimited(properties.getAuth(), "reset:203.0.113.7");
+    }
+
+    @Test
+    void testEncodedLoginPathIsClassifiedAsLogin() throws Exception {
+        // Given
+        classifyAs(RequestType.AUTH_LOGIN, properties.getAuth(), "login:");
+        MockHttpServletRequest request = request("/iam/api/v1/auth/%6Cogin", "203.0.113.7");
+        request.setContextPath("/iam");
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        verify(requestClassifier).classify("/api/v1/auth/login", "POST");
+        verify(rateLimitingService).isRateLimited(properties.getAuth(), "login:203.0.113.7");
+    }
+
+    @Test
+    void testPathParameterDoesNotSkipRateLimiting() throws Exception {
+        // Given - ";.css" is dropped before handler mapping, so this still reaches the login endpoint
+        classifyAs(RequestType.AUTH_LOGIN, properties.getAuth(), "login:");
+
+        // When
+        filter.doFilter(request("/api/v1/auth/login;.css", "203.0.113.7"), new MockHttpServletResponse(),
+            new MockFilterChain());
+
+        // Then
+        verify(requestClassifier).classify("/api/v1/auth/login", "POST");
+    }
+
+    private void classifyAs(RequestType type, RateLimitProperties.RateLimitConfig tier, String prefix) {
+        when(requestClassifier.classify(anyString(), anyString())).thenReturn(new RequestPattern(type, tier, prefix));
+    }
+
+    private static MockHttpServletRequest request(String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
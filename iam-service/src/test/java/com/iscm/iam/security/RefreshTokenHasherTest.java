@@ -0,0 +1,41 @@
+package com.iscm.iam.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshTokenHasherTest {
+
+    private RefreshTokenHasher hasher;
+
+    @BeforeEach
+    void setUp() {
+        hasher = new RefreshTokenHasher();
+        ReflectionTestUtils.setField(hasher, "hashSecret", "test-refresh-token-hash-secret");
+        ReflectionTestUtils.invokeMethod(hasher, "init");
+    }
+
+    @Test
+    void testHashIsDeterministic() {
+        // Given
+        String refreshToken = "header.payload.signature";
+
+        // When
+        String first = hasher.hash(refreshToken);
+        String second = hasher.hash(refreshToken);
+
+        // Then
+        assertEquals(first, second);
+        assertEquals(64, first.length());
+        assertNotEquals(first, hasher.hash("header.payload.other-signature"));
+    }
+
+    @Test
+    void testLegacyHashDetection() {
+        assertTrue(hasher.isLegacyHash("$2a$12$abcdefghijklmnopqrstuv"));
+        assertFalse(hasher.isLegacyHash(hasher.hash("token")));
+        assertFalse(hasher.isLegacyHash(null));
+    }
+}
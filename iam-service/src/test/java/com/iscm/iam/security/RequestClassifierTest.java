@@ -0,0 +1,80 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.config.RateLimitProperties;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern;
+import com.iscm.iam.security.RateLimitingFilter.RequestPattern.RequestType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RequestClassifierTest {
+
+    private RequestClassifier classifier;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Map<RequestMappingInfo, HandlerMethod> routes = new HashMap<>();
+        routes.put(route("/api/v1/auth/login", RequestMethod.POST), mock(HandlerMethod.class));
+        routes.put(route("/api/v1/password-reset/confirm", RequestMethod.POST), mock(HandlerMethod.class));
+        routes.put(route("/api/v1/users/{id}", RequestMethod.GET), mock(HandlerMethod.class));
+        routes.put(route("/api/v1/users/{id}/roles", RequestMethod.POST), mock(HandlerMethod.class));
+        routes.put(route("/api/v1/users/me", RequestMethod.GET), mock(HandlerMethod.class));
+        routes.put(route("/api/v1/admin/**"), mock(HandlerMethod.class));
+
+        RequestMappingHandlerMapping mapping = mock(RequestMappingHandlerMapping.class);
+        when(mapping.getHandlerMethods()).thenReturn(routes);
+        ObjectProvider<RequestMappingHandlerMapping> mappings = mock(ObjectProvider.class);
+        when(mappings.orderedStream()).thenAnswer(invocation -> Stream.of(mapping));
+
+        classifier = new RequestClassifier(new RateLimitProperties(), mappings);
+        classifier.build();
+    }
+
+    @Test
+    void testPathsAreClassifiedByRouteTemplate() {
+        // When / Then
+        assertEquals(RequestType.AUTH_LOGIN, classifier.classify("/api/v1/auth/login", "POST").getType());
+        assertEquals(RequestType.AUTH_PASSWORD_RESET,
+            classifier.classify("/api/v1/password-reset/confirm", "POST").getType());
+        assertEquals(RequestType.API_SENSITIVE,
+            classifier.classify("/api/v1/users/7f1c2a9e-1d2b-4c3d-8e9f-0a1b2c3d4e5f/roles", "POST").getType());
+        assertEquals(RequestType.API_SENSITIVE, classifier.classify("/api/v1/admin/users/42/lock", "PUT").getType());
+        assertEquals(RequestType.API_GENERAL, classifier.classify("/api/v1/users/me", "GET").getType());
+    }
+
+    @Test
+    void testDistinctIdsShareOnePolicy() {
+        // When
+        RequestPattern first = classifier.classify("/api/v1/users/1b4e28ba-2fa1-11d2-883f-0016d3cca427", "GET");
+        RequestPattern second = classifier.classify("/api/v1/users/6fa459ea-ee8a-3ca4-894e-db77e160355e", "GET");
+
+        // Then
+        assertSame(first, second);
+        assertEquals(RequestType.API_GENERAL, first.getType());
+    }
+
+    @Test
+    void testUnknownPathsAreGeneralApiTraffic() {
+        // When
+        RequestPattern unknown = classifier.classify("/api/v1/does-not-exist/123", "GET");
+
+        // Then
+        assertSame(classifier.classify("/api/v1/users/1", "GET"), unknown);
+    }
+
+    private static RequestMappingInfo route(String path, RequestMethod... methods) {
+        return RequestMappingInfo.paths(path).methods(methods).build();
+    }
+}
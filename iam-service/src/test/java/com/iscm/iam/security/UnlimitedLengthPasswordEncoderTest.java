@@ -0,0 +1,97 @@
+package com.iscm.iam.security;
+
+import com.iscm.iam.exception.PasswordHashingUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnlimitedLengthPasswordEncoderTest {
+
+    // Cheap parameters keep the tests fast; the behaviour does not depend on them
+    private static final Argon2PasswordEncoder ARGON2 = new Argon2PasswordEncoder(16, 32, 1, 1024, 1);
+
+    @Test
+    void testLongPasswordMatchesAfterEncode() {
+        // Given
+        UnlimitedLengthPasswordEncoder encoder = bcrypt(4);
+        String longPassword = "p".repeat(100) + "!";
+
+        // When
+        String hash = encoder.encode(longPassword);
+
+        // Then
+        assertTrue(encoder.matches(longPassword, hash));
+        assertFalse(encoder.matches("p".repeat(100) + "?", hash));
+    }
+
+    @Test
+    void testUpgradeEncodingFlagsWeakerCostAndOtherAlgorithm() {
+        // Given
+        String cost4Hash = bcrypt(4).encode("Password123!");
+        UnlimitedLengthPasswordEncoder argon2 = new UnlimitedLengthPasswordEncoder(
+                UnlimitedLengthPasswordEncoder.Algorithm.ARGON2ID, 4, ARGON2);
+
+        // When / Then
+        assertFalse(bcrypt(4).upgradeEncoding(cost4Hash));
+        assertTrue(bcrypt(5).upgradeEncoding(cost4Hash));
+        assertTrue(argon2.upgradeEncoding(cost4Hash));
+
+        String argon2Hash = argon2.encode("Password123!");
+        assertTrue(argon2.matches("Password123!", argon2Hash));
+        assertTrue(bcrypt(4).matches("Password123!", argon2Hash));
+        assertFalse(argon2.upgradeEncoding(argon2Hash));
+        assertTrue(bcrypt(4).upgradeEncoding(argon2Hash));
+    }
+
+    @Test
+    void testBulkheadRejectsWhenSaturated() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BulkheadPasswordEncoder bulkhead = new BulkheadPasswordEncoder(blocking, 1, 1, 50, registry);
+        Thread holder = new Thread(() -> assertThrows(PasswordHashingUnavailableException.class,
+                () -> bulkhead.encode("first")));
+        holder.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        // The only worker is busy, so the queued call gives up after the wait limit
+        assertThrows(PasswordHashingUnavailableException.class, () -> bulkhead.encode("queued"));
+
+        // Then
+        release.countDown();
+        holder.join(5000);
+        // Both callers waited longer than the limit, while the worker stays usable afterwards
+        assertEquals(2.0, registry.counter("password.hashing.rejected").count());
+        assertTrue(bulkhead.matches("same", "same"));
+        bulkhead.shutdown();
+    }
+
+    private static UnlimitedLengthPasswordEncoder bcrypt(int cost) {
+        return new UnlimitedLengthPasswordEncoder(UnlimitedLengthPasswordEncoder.Algorithm.BCRYPT, cost, ARGON2);
+    }
+}
@@ -0,0 +1,85 @@
+package com.iscm.iam.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ActivityWriteBehindBufferTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ActivityWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        buffer = new ActivityWriteBehindBuffer(jdbcTemplate);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "batchSize", 500);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdatesAreCoalescedIntoOneBatchRowPerKey() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        LocalDateTime first = LocalDateTime.now().minusMinutes(1);
+        LocalDateTime latest = LocalDateTime.now();
+        buffer.recordLogin(userId, first);
+        buffer.recordLogin(userId, latest);
+        buffer.recordLogin(userId, first);
+
+        // When
+        buffer.flush();
+
+        // Then
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("users"), batch.capture());
+        assertEquals(1, batch.getValue().size());
+        assertEquals(Timestamp.valueOf(latest), batch.getValue().get(0)[0]);
+        assertEquals(userId, batch.getValue().get(0)[1]);
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    void testFailedFlushKeepsUpdatesForNextRun() {
+        // Given
+        buffer.recordSessionAccess(UUID.randomUUID(), LocalDateTime.now());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(new int[] {1});
+
+        // When
+        buffer.flush();
+
+        // Then
+        assertEquals(1, buffer.pendingCount());
+
+        // When
+        buffer.flush();
+
+        // Then
+        assertEquals(0, buffer.pendingCount());
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("user_sessions"), anyList());
+    }
+
+    @Test
+    void testNothingIsWrittenWhenNothingIsPending() {
+        // When
+        buffer.flush();
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
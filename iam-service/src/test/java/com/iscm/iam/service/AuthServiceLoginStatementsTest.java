@@ -0,0 +1,69 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.BaseIntegrationTest;
+import com.iscm.iam.dto.AuthRequest;
+import com.iscm.iam.dto.AuthResponse;
+import com.iscm.iam.dto.RegisterRequest;
+import com.iscm.iam.model.User;
+import com.iscm.iam.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    // Keep the background snapshot check out of the statement count
+    "app.security.stateless-auth.snapshot-refresh-interval-ms=3600000"
+})
+class AuthServiceLoginStatementsTest extends BaseIntegrationTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ActivityWriteBehindBuffer activityBuffer;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testSuccessfulLoginUsesAtMostTwoStatements() {
+        // Given
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail("statements@example.com");
+        registerRequest.setPassword("SecurePass123!");
+        registerRequest.setFirstName("Statement");
+        registerRequest.setLastName("Counter");
+        authService.register(registerRequest);
+
+        AuthRequest loginRequest = new AuthRequest();
+        loginRequest.setEmail("statements@example.com");
+        loginRequest.setPassword("SecurePass123!");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        AuthResponse response = authService.login(loginRequest);
+
+        // Then
+        assertNotNull(response.getAccessToken());
+        assertFalse(response.getUser().getRoles().isEmpty());
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+            "Login prepared " + statistics.getPrepareStatementCount() + " statements");
+
+        // The login time is written by the next flush
+        activityBuffer.flush();
+        User user = userRepository.findByEmail("statements@example.com").orElseThrow();
+        assertNotNull(user.getLastLoginAt());
+        assertEquals(0, user.getFailedLoginAttempts());
+    }
+}
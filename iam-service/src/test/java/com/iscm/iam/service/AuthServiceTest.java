@@ -202,6 +202,25 @@ class AuthServiceTest extends BaseIntegrationTest {
         assertNotEquals(registerResponse.getRefreshToken(), refreshResponse.getRefreshToken());
     }
 
+    @Test
+    void testRefreshToken_DisabledAccountIsRejected() {
+        // Given
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail("disabled@example.com");
+        registerRequest.setPassword("SecurePass123!");
+        registerRequest.setFirstName("Disabled");
+        registerRequest.setLastName("User");
+        AuthResponse registerResponse = authService.register(registerRequest);
+        User user = userRepository.findByEmail("disabled@example.com").orElseThrow();
+        user.setIsActive(false);
+        userRepository.save(user);
+
+        // When / Then
+        assertThrows(SecurityException.class, () -> {
+            authService.refreshToken(registerResponse.getRefreshToken());
+        });
+    }
+
     @Test
     void testLogout_Success() {
         // Given
@@ -1,24 +1,30 @@
 package com.iscm.iam.service;
 
-import com.iscm.iam.BaseIntegrationTest;
-import org.junit.jupiter.api.Disabled;
+import com.iscm.iam.config.RateLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-//import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@Disabled("Rate limiting service has been disabled - BasicRateLimitingService is no longer a Spring bean")
-class BasicRateLimitingServiceTest extends BaseIntegrationTest {
+class BasicRateLimitingServiceTest {
 
-    //@Autowired
-    private BasicRateLimitingService rateLimitingService = new BasicRateLimitingService();
+    private BasicRateLimitingService rateLimitingService;
+
+    @BeforeEach
+    void setUp() {
+        rateLimitingService = new BasicRateLimitingService(new RateLimitProperties(),
+            Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneId.of("UTC")));
+    }
 
     @Test
     void testRateLimitingWithinLimit() {
         String key = "test-client";
-        
+
         for (int i = 0; i < 5; i++) {
             boolean limited = rateLimitingService.isRateLimited(key, 10, Duration.ofMinutes(1));
             assertFalse(limited, "Request " + (i + 1) + " should not be limited");
@@ -28,14 +34,49 @@ class BasicRateLimitingServiceTest extends BaseIntegrationTest {
     @Test
     void testRateLimitingExceedsLimit() {
         String key = "test-client-2";
-        
+
         // Use all available requests
         for (int i = 0; i < 10; i++) {
             rateLimitingService.isRateLimited(key, 10, Duration.ofMinutes(1));
         }
-        
+
         // Next request should be limited
         boolean limited = rateLimitingService.isRateLimited(key, 10, Duration.ofMinutes(1));
         assertTrue(limited, "Request should be limited after exceeding rate limit");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRemainingRequestsAndReset() {
+        // Given
+        String key = "test-client-3";
+        for (int i = 0; i < 4; i++) {
+            rateLimitingService.isRateLimited(key, 10, Duration.ofMinutes(1));
+        }
+
+        // When / Then
+        assertEquals(6, rateLimitingService.getRemainingRequests(key, 10, Duration.ofMinutes(1)));
+        assertEquals(Duration.ofSeconds(24), rateLimitingService.getTimeUntilReset(key, Duration.ofMinutes(1)));
+
+        // When
+        rateLimitingService.reset(key);
+
+        // Then
+        assertEquals(10, rateLimitingService.getRemainingRequests(key, 10, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void testBurstLimitedAfterRepeatedRefusals() {
+        // Given
+        String key = "test-client-4";
+        assertFalse(rateLimitingService.isBurstLimited(key, 3, Duration.ofMinutes(5)));
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            rateLimitingService.recordBurst(key, Duration.ofMinutes(5));
+        }
+
+        // Then
+        assertTrue(rateLimitingService.isBurstLimited(key, 3, Duration.ofMinutes(5)));
+        assertFalse(rateLimitingService.isBurstLimited("other-client", 3, Duration.ofMinutes(5)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.config.RateLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DistributedRateLimitingServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneId.of("UTC"));
+
+    private RateLimitProperties properties;
+    private StringRedisTemplate redis;
+    private DistributedRateLimitingService rateLimitingService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getRedis().setEnabled(true);
+        properties.getRedis().setLeaseFraction(0.1);
+        redis = mock(StringRedisTemplate.class);
+        rateLimitingService = new DistributedRateLimitingService(properties,
+            new BasicRateLimitingService(properties, CLOCK), redis, CLOCK);
+    }
+
+    @Test
+    void testRequestsAreAdmittedFromLeaseWithoutRedisCalls() {
+        // Given - Redis grants the whole lease of 10
+        redisGrants(10L);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            assertFalse(rateLimitingService.isRateLimited("api:10.0.0.1", 100, Duration.ofMinutes(1)));
+        }
+
+        // Then
+        verify(redis, times(1)).execute(any(RedisScript.class), anyList(), any(), any(), any());
+        assertEquals(9, rateLimitingService.getLeaseAdmissions());
+    }
+
+    @Test
+    void testRefusedKeyIsNotAskedForAgainImmediately() {
+        // Given
+        redisGrants(0L);
+
+        // When
+        boolean first = rateLimitingService.isRateLimited("api:10.0.0.1", 100, Duration.ofMinutes(1));
+        boolean second = rateLimitingService.isRateLimited("api:10.0.0.1", 100, Duration.ofMinutes(1));
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        verify(redis, times(1)).execute(any(RedisScript.class), anyList(), any(), any(), any());
+        assertEquals(0, rateLimitingService.getRemainingRequests("api:10.0.0.1", 100, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void testFallsBackToPerNodeLimitsWhenRedisFails() {
+        // Given
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+            .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When - the limit of 3 is enforced locally
+        for (int i = 0; i < 3; i++) {
+            assertFalse(rateLimitingService.isRateLimited("login:10.0.0.1", 3, Duration.ofMinutes(1)));
+        }
+
+        // Then
+        assertTrue(rateLimitingService.isRateLimited("login:10.0.0.1", 3, Duration.ofMinutes(1)));
+        verify(redis, times(1)).execute(any(RedisScript.class), anyList(), any(), any(), any());
+        assertEquals(1, rateLimitingService.getFallbacks());
+    }
+
+    @Test
+    void testPerNodeLimitsWithoutRedis() {
+        // Given
+        properties.getRedis().setEnabled(false);
+        DistributedRateLimitingService local = new DistributedRateLimitingService(properties,
+            new BasicRateLimitingService(properties, CLOCK), null, CLOCK);
+
+        // When
+        assertFalse(local.isRateLimited("login:10.0.0.1", 1, Duration.ofMinutes(1)));
+
+        // Then
+        assertFalse(local.isDistributed());
+        assertTrue(local.isRateLimited("login:10.0.0.1", 1, Duration.ofMinutes(1)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void redisGrants(Long granted) {
+        when(redis.execute(any(RedisScript.class), anyList(), any(), any(), any())).thenReturn(granted);
+    }
+}
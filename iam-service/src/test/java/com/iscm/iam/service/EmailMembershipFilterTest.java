@@ -0,0 +1,146 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.repository.UserRepository;
+import com.iscm.iam.security.RevocationEvent;
+import com.iscm.iam.security.RevocationPropagator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailMembershipFilterTest {
+
+    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
+    private RevocationPropagator propagator;
+    private EmailMembershipFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        propagator = mock(RevocationPropagator.class);
+        filter = new EmailMembershipFilter(userRepository, jdbcTemplate, propagator, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "expectedEmails", 1000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(filter, "negativeTtlSeconds", 60L);
+        ReflectionTestUtils.setField(filter, "negativeMaxSize", 1000L);
+        ReflectionTestUtils.setField(filter, "catchUpOverlapSeconds", 120L);
+        ReflectionTestUtils.setField(filter, "fetchSize", 100);
+        ReflectionTestUtils.invokeMethod(filter, "init");
+    }
+
+    @Test
+    void testLookupsGoToDatabaseUntilFilterIsBuilt() {
+        // Given
+        when(userRepository.existsByEmail("known@example.com")).thenReturn(true);
+
+        // When / Then
+        assertFalse(filter.isReady());
+        assertTrue(filter.existsByEmail("known@example.com"));
+        verify(userRepository).existsByEmail("known@example.com");
+    }
+
+    @Test
+    void testUnknownEmailSkipsDatabaseOnceBuilt() {
+        // Given
+        scanReturns("known@example.com");
+        filter.rebuild();
+        when(userRepository.existsByEmail("known@example.com")).thenReturn(true);
+
+        // When / Then
+        assertTrue(filter.isReady());
+        assertFalse(filter.existsByEmail("unknown@example.com"));
+        assertTrue(filter.existsByEmail("known@example.com"));
+        verify(userRepository, never()).existsByEmail("unknown@example.com");
+        assertEquals(1, filter.getAvoidedLookups());
+    }
+
+    @Test
+    void testConfirmedMissIsNegativelyCachedUntilEmailIsRecorded() {
+        // Given - nothing built yet, so only the negative cache can answer
+        when(userRepository.existsByEmail("new@example.com")).thenReturn(false);
+        assertFalse(filter.existsByEmail("new@example.com"));
+
+        // When
+        boolean cachedAnswer = filter.existsByEmail("new@example.com");
+
+        // Then
+        assertFalse(cachedAnswer);
+        verify(userRepository, times(1)).existsByEmail("new@example.com");
+
+        // When - the email gets registered
+        filter.recordEmail("new@example.com");
+
+        // Then
+        assertTrue(filter.mightExist("new@example.com"));
+    }
+
+    @Test
+    void testFilterRejectionDoesNotSkipLoginLookup() {
+        // Given - registered on another node after this node's last scan
+        scanReturns();
+        filter.rebuild();
+
+        // When / Then
+        assertTrue(filter.mightExist("elsewhere@example.com"));
+    }
+
+    @Test
+    void testRecordedEmailIsVisibleWithoutRebuildAndAnnounced() {
+        // Given
+        scanReturns();
+        filter.rebuild();
+        assertFalse(filter.existsByEmail("late@example.com"));
+
+        // When
+        filter.recordEmail("late@example.com");
+        when(userRepository.existsByEmail("late@example.com")).thenReturn(true);
+
+        // Then
+        assertTrue(filter.existsByEmail("late@example.com"));
+        verify(propagator).publishEmailRegistered("late@example.com");
+    }
+
+    @Test
+    void testRemoteRegistrationIsLearnedBeforeNextScan() {
+        // Given
+        scanReturns();
+        filter.rebuild();
+        filter.recordAbsent("remote|user@example.com");
+        assertFalse(filter.mightExist("remote|user@example.com"));
+
+        // When
+        filter.onRemoteRevocation(RevocationEvent.emailRegistered("remote|user@example.com", "other-node"));
+        when(userRepository.existsByEmail("remote|user@example.com")).thenReturn(true);
+
+        // Then
+        assertTrue(filter.mightExist("remote|user@example.com"));
+        assertTrue(filter.existsByEmail("remote|user@example.com"));
+    }
+
+    private void scanReturns(String... emails) {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn((long) emails.length);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String email : List.of(emails)) {
+                ResultSet resultSet = mock(ResultSet.class);
+                when(resultSet.getString(1)).thenReturn(email);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,95 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.model.Permission;
+import com.iscm.iam.model.Role;
+import com.iscm.iam.repository.RoleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RolePermissionSnapshotTest {
+
+    private RoleRepository roleRepository;
+    private RolePermissionSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        roleRepository = mock(RoleRepository.class);
+        snapshot = new RolePermissionSnapshot(roleRepository);
+
+        Role admin = new Role();
+        admin.setName("ADMIN");
+        admin.setPermissions(new ArrayList<>(List.of(permission("USER_READ"), permission("USER_WRITE"))));
+        when(roleRepository.findAllWithPermissions()).thenReturn(List.of(admin));
+        when(roleRepository.findAuthorizationVersion()).thenReturn(Optional.of(3L));
+    }
+
+    @Test
+    void testAuthoritiesResolvedFromSnapshot() {
+        // Given
+        snapshot.refresh();
+
+        // When
+        List<String> authorities = snapshot.getAuthorities(List.of("ADMIN", "USER")).stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+
+        // Then
+        assertEquals(List.of("ROLE_ADMIN", "USER_READ", "USER_WRITE", "ROLE_USER"), authorities);
+        assertEquals(3L, snapshot.getVersion());
+    }
+
+    @Test
+    void testAuthoritiesAreBuiltOncePerSnapshot() {
+        // Given
+        Role admin = new Role();
+        admin.setName("ADMIN");
+        admin.setPermissions(new ArrayList<>(List.of(permission("USER_READ"), permission("USER_WRITE"))));
+        Role auditor = new Role();
+        auditor.setName("AUDITOR");
+        auditor.setPermissions(new ArrayList<>(List.of(permission("USER_READ"))));
+        when(roleRepository.findAllWithPermissions()).thenReturn(List.of(admin, auditor));
+        snapshot.refresh();
+
+        // When
+        Collection<GrantedAuthority> first = snapshot.getAuthorities(List.of("ADMIN"));
+        Collection<GrantedAuthority> second = snapshot.getAuthorities(List.of("ADMIN"));
+        List<GrantedAuthority> auditorAuthorities = List.copyOf(snapshot.getAuthorities(List.of("AUDITOR")));
+
+        // Then
+        assertSame(first, second);
+        assertSame(List.copyOf(first).get(1), auditorAuthorities.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> first.clear());
+    }
+
+    @Test
+    void testEnsureVersionReloadsOnlyForNewerTokens() {
+        // Given
+        snapshot.refresh();
+
+        // When
+        assertTrue(snapshot.ensureVersion(2L));
+        assertTrue(snapshot.ensureVersion(3L));
+        when(roleRepository.findAuthorizationVersion()).thenReturn(Optional.of(4L));
+        boolean current = snapshot.ensureVersion(4L);
+
+        // Then
+        assertTrue(current);
+        assertEquals(4L, snapshot.getVersion());
+        verify(roleRepository, times(2)).findAllWithPermissions();
+    }
+
+    private Permission permission(String code) {
+        Permission permission = new Permission();
+        permission.setCode(code);
+        return permission;
+    }
+}
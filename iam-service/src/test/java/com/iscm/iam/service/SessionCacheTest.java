@@ -0,0 +1,80 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.model.User;
+import com.iscm.iam.model.UserSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCacheTest {
+
+    private SessionCache sessionCache;
+
+    @BeforeEach
+    void setUp() {
+        sessionCache = new SessionCache();
+        ReflectionTestUtils.setField(sessionCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(sessionCache, "ttlSeconds", 300L);
+        ReflectionTestUtils.invokeMethod(sessionCache, "init");
+    }
+
+    @Test
+    void testRevocationOnlyTouchesIndexedEntries() {
+        // Given
+        User user = user();
+        User otherUser = user();
+        UserSession first = session(user, LocalDateTime.now().plusDays(7));
+        UserSession second = session(user, LocalDateTime.now().plusDays(7));
+        UserSession other = session(otherUser, LocalDateTime.now().plusDays(7));
+        sessionCache.put("digest-1", first);
+        sessionCache.put("digest-2", second);
+        sessionCache.put("digest-3", other);
+
+        // When
+        sessionCache.invalidateSession(first.getId());
+
+        // Then
+        assertNull(sessionCache.get("digest-1"));
+        assertEquals(second.getId(), sessionCache.get("digest-2").id());
+
+        // When
+        sessionCache.invalidateUser(user.getId());
+
+        // Then
+        assertNull(sessionCache.get("digest-2"));
+        assertEquals(other.getId(), sessionCache.get("digest-3").id());
+        assertEquals(1, sessionCache.size());
+    }
+
+    @Test
+    void testExpiredSessionsAreNotReturned() {
+        // Given
+        UserSession expired = session(user(), LocalDateTime.now().minusSeconds(1));
+
+        // When
+        sessionCache.put("expired-digest", expired);
+
+        // Then
+        assertNull(sessionCache.get("expired-digest"));
+        assertEquals(1, sessionCache.stats().missCount());
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        return user;
+    }
+
+    private static UserSession session(User user, LocalDateTime expiresAt) {
+        UserSession session = new UserSession();
+        session.setId(UUID.randomUUID());
+        session.setUser(user);
+        session.setExpiresAt(expiresAt);
+        return session;
+    }
+}
@@ -0,0 +1,122 @@
+package com.iscm.iam.service;
+
+import com.iscm.iam.model.User;
+import com.iscm.iam.model.UserSession;
+import com.iscm.iam.repository.UserSessionRepository;
+import com.iscm.iam.security.JwtUtil;
+import com.iscm.iam.security.RefreshTokenHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserSessionServiceTest {
+
+    private UserSessionRepository sessionRepository;
+    private RefreshTokenHasher refreshTokenHasher;
+    private UserSessionService sessionService;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository = mock(UserSessionRepository.class);
+        when(sessionRepository.save(any(UserSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        refreshTokenHasher = new RefreshTokenHasher();
+        ReflectionTestUtils.setField(refreshTokenHasher, "hashSecret", "test-refresh-token-hash-secret");
+        ReflectionTestUtils.invokeMethod(refreshTokenHasher, "init");
+
+        SessionCache sessionCache = new SessionCache();
+        ReflectionTestUtils.setField(sessionCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(sessionCache, "ttlSeconds", 300L);
+        ReflectionTestUtils.invokeMethod(sessionCache, "init");
+
+        sessionService = new UserSessionService(sessionRepository, mock(PasswordEncoder.class), refreshTokenHasher,
+            mock(JwtUtil.class), sessionCache, mock(SessionPartitionMaintainer.class));
+        ReflectionTestUtils.setField(sessionService, "legacyBcryptFallbackEnabled", false);
+    }
+
+    @Test
+    void testRotationKeepsPreviousDigest() {
+        // Given
+        UserSession session = session(refreshTokenHasher.hash("old-token"));
+
+        // When
+        sessionService.updateSession(session, "new-token");
+
+        // Then
+        assertEquals(refreshTokenHasher.hash("new-token"), session.getRefreshTokenHash());
+        assertEquals(refreshTokenHasher.hash("old-token"), session.getPreviousRefreshTokenHash());
+    }
+
+    @Test
+    void testReplayedTokenRevokesSession() {
+        // Given
+        UserSession session = session(refreshTokenHasher.hash("old-token"));
+        sessionService.updateSession(session, "new-token");
+        when(sessionRepository.findByRefreshTokenHashAndValid(eq(refreshTokenHasher.hash("old-token")), any()))
+            .thenReturn(Optional.empty());
+        when(sessionRepository.revokeByPreviousRefreshTokenHash(eq(refreshTokenHasher.hash("old-token")), any()))
+            .thenReturn(List.of(session.getId()));
+
+        // When
+        assertThrows(SecurityException.class, () -> sessionService.validateRefreshToken("old-token"));
+
+        // Then
+        verify(sessionRepository).revokeByPreviousRefreshTokenHash(eq(refreshTokenHasher.hash("old-token")), any());
+        when(sessionRepository.findByRefreshTokenHashAndValid(eq(refreshTokenHasher.hash("new-token")), any()))
+            .thenReturn(Optional.empty());
+        assertThrows(SecurityException.class, () -> sessionService.validateRefreshToken("new-token"));
+    }
+
+    @Test
+    void testCachedSessionRevokedInDatabaseIsRejected() {
+        // Given - cached on this node, then revoked by another
+        UserSession session = session(refreshTokenHasher.hash("old-token"));
+        sessionService.updateSession(session, "new-token");
+        when(sessionRepository.findValidSessionByKey(eq(session.getId()), eq(session.getExpiresAt()),
+            eq(refreshTokenHasher.hash("new-token")), any())).thenReturn(Optional.empty());
+        when(sessionRepository.findByRefreshTokenHashAndValid(eq(refreshTokenHasher.hash("new-token")), any()))
+            .thenReturn(Optional.empty());
+
+        // When / Then
+        assertThrows(SecurityException.class, () -> sessionService.validateRefreshToken("new-token"));
+        verify(sessionRepository).revokeByPreviousRefreshTokenHash(eq(refreshTokenHasher.hash("new-token")), any());
+    }
+
+    @Test
+    void testCachedSessionIsReadFromDatabase() {
+        // Given
+        UserSession session = session(refreshTokenHasher.hash("old-token"));
+        sessionService.updateSession(session, "new-token");
+        UserSession stored = session(refreshTokenHasher.hash("new-token"));
+        when(sessionRepository.findValidSessionByKey(eq(session.getId()), eq(session.getExpiresAt()),
+            eq(refreshTokenHasher.hash("new-token")), any())).thenReturn(Optional.of(stored));
+
+        // When
+        UserSession validated = sessionService.validateRefreshToken("new-token");
+
+        // Then
+        assertSame(stored, validated);
+        verify(sessionRepository, never()).findByRefreshTokenHashAndValid(any(), any());
+    }
+
+    private static UserSession session(String refreshTokenHash) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        UserSession session = new UserSession();
+        session.setId(UUID.randomUUID());
+        session.setUser(user);
+        session.setRefreshTokenHash(refreshTokenHash);
+        session.setExpiresAt(LocalDateTime.now().plusDays(7));
+        session.setRevoked(false);
+        return session;
+    }
+}
@@ -0,0 +1,181 @@
+package com.iscm.iam.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    private MutableClock clock;
+    private TokenBucketRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        limiter = new TokenBucketRateLimiter(10, Duration.ofMinutes(1), 4, 1000, clock);
+    }
+
+    @Test
+    void testAcquiresUpToCapacityThenRefuses() {
+        // When
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("client"), "Request " + (i + 1) + " should be allowed");
+        }
+
+        // Then
+        assertFalse(limiter.tryAcquire("client"));
+        assertEquals(0, limiter.available("client"));
+        assertEquals(10, limiter.available("other-client"));
+    }
+
+    @Test
+    void testTokensRefillOverPeriod() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        // When - one token accrues every 6 seconds
+        clock.advance(Duration.ofSeconds(6));
+
+        // Then
+        assertTrue(limiter.tryAcquire("client"));
+        assertFalse(limiter.tryAcquire("client"));
+        assertEquals(Duration.ofMinutes(1), limiter.timeUntilFull("client"));
+    }
+
+    @Test
+    void testFrequentChecksDoNotLoseFractionalRefill() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        // When - checked every second, more often than a whole token accrues
+        for (int i = 0; i < 5; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            assertFalse(limiter.tryAcquire("client"));
+        }
+        clock.advance(Duration.ofSeconds(1));
+
+        // Then
+        assertTrue(limiter.tryAcquire("client"));
+    }
+
+    @Test
+    void testEvictIdleDropsOnlyFullBuckets() {
+        // Given
+        limiter.tryAcquire("idle");
+        limiter.tryAcquire("busy");
+        clock.advance(Duration.ofMinutes(1));
+        limiter.tryAcquire("busy");
+
+        // When
+        int evicted = limiter.evictIdle();
+
+        // Then
+        assertEquals(1, evicted);
+        assertEquals(1, limiter.size());
+        assertEquals(9, limiter.available("busy"));
+        assertEquals(10, limiter.available("idle"));
+    }
+
+    @Test
+    void testNewKeysShareOverflowBucketWhenFull() {
+        // Given - a single stripe holding two keys
+        TokenBucketRateLimiter small = new TokenBucketRateLimiter(2, Duration.ofMinutes(1), 1, 2, clock);
+        small.tryAcquire("a");
+        small.tryAcquire("b");
+
+        // When - distinct keys beyond the bound draw from one shared bucket
+        assertTrue(small.tryAcquire("c"));
+        assertTrue(small.tryAcquire("d"));
+
+        // Then
+        assertFalse(small.tryAcquire("e"));
+        assertEquals(2, small.size());
+    }
+
+    @Test
+    void testDrainAndReset() {
+        // When
+        limiter.drain("client");
+
+        // Then
+        assertFalse(limiter.tryAcquire("client"));
+
+        // When
+        limiter.reset("client");
+
+        // Then
+        assertTrue(limiter.tryAcquire("client"));
+    }
+
+    @Test
+    void testConcurrentAcquiresNeverExceedCapacity() throws InterruptedException {
+        // Given
+        TokenBucketRateLimiter shared = new TokenBucketRateLimiter(1000, Duration.ofHours(1), 4, 1000, clock);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    if (shared.tryAcquire("hot-key")) {
+                        acquired.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(1000, acquired.get());
+        assertEquals(0, shared.available("hot-key"));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}